@@ -0,0 +1,59 @@
+package com.therdl.prime.calc.alg.lucas;
+
+import com.therdl.prime.calc.alg.MemoryGovernor;
+import com.therdl.prime.calc.alg.Primes;
+import com.therdl.prime.calc.alg.Scheduler;
+import com.therdl.prime.calc.alg.sieve.PrimeCache;
+import com.therdl.prime.calc.alg.sieve.PrimeTable;
+import com.therdl.prime.calc.alg.sieve.SieveAlg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Times {@link LucasAlg#process} from 0 up to a ladder of limits with a ladder of {@link Scheduler} threads verifying
+ * the batches. The batch size and queue depth are the defaults from prime-calc.properties and the base primes are
+ * sieved on every operation as the prime cache is disabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LucasAlgBenchmark {
+
+	private static final long DEADLINE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+	@Param({"100000", "1000000", "10000000"})
+	private long limit;
+
+	@Param({"1", "2", "4"})
+	private int threads;
+
+	private LucasAlg lucasAlg;
+
+	@Setup
+	public void setUp() {
+		Scheduler scheduler = new Scheduler(threads);
+		MemoryGovernor governor = new MemoryGovernor(0, 16);
+		SieveAlg sieveAlg = new SieveAlg(new PrimeCache(0), new PrimeTable(""), scheduler, governor);
+		lucasAlg = new LucasAlg(sieveAlg, scheduler, governor, 1024, 16);
+	}
+
+	@Benchmark
+	public Primes process() throws TimeoutException, InterruptedException {
+		return lucasAlg.process(0, limit, System.nanoTime() + DEADLINE_NANOS);
+	}
+}
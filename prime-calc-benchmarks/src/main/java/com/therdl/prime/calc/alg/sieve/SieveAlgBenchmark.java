@@ -0,0 +1,53 @@
+package com.therdl.prime.calc.alg.sieve;
+
+import com.therdl.prime.calc.alg.MemoryGovernor;
+import com.therdl.prime.calc.alg.Primes;
+import com.therdl.prime.calc.alg.Scheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Times {@link SieveAlg#process} from 0 up to a ladder of limits with a ladder of {@link Scheduler} threads. The prime
+ * cache and table are disabled so every operation sieves the whole range, the base primes included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SieveAlgBenchmark {
+
+	private static final long DEADLINE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+	@Param({"1000000", "10000000", "100000000"})
+	private long limit;
+
+	@Param({"1", "2", "4"})
+	private int threads;
+
+	private SieveAlg sieveAlg;
+
+	@Setup
+	public void setUp() {
+		sieveAlg = new SieveAlg(new PrimeCache(0), new PrimeTable(""), new Scheduler(threads),
+				new MemoryGovernor(0, 16));
+	}
+
+	@Benchmark
+	public Primes process() throws TimeoutException, InterruptedException {
+		return sieveAlg.process(0, limit, System.nanoTime() + DEADLINE_NANOS);
+	}
+}
@@ -0,0 +1,71 @@
+package com.therdl.prime.calc.api;
+
+import com.therdl.prime.calc.model.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the parsing of a request body by the {@link DispatcherServlet}, reading the JSON payload and validating its
+ * fields, for a request by limit, one by range and one for a page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatcherServletBenchmark {
+
+	@Param({"limit", "range", "page"})
+	private String shape;
+
+	private DispatcherServlet servlet;
+
+	private HttpServletRequest httpRequest;
+
+	@Setup
+	public void setUp() {
+		servlet = new DispatcherServlet(null, null, null, null, null, null, null, null, null,
+				new Timeouts(5000, 30000), null);
+		String payload;
+		if ("limit".equals(shape)) {
+			payload = "{\"method\": \"SIEVE\", \"limit\": \"1000000\"}";
+		} else if ("range".equals(shape)) {
+			payload = "{\"method\": \"MILLER_RABIN\", \"from\": \"1000000000000\", \"to\": \"1000001000000\","
+					+ " \"timeoutMs\": \"2000\"}";
+		} else {
+			payload = "{\"method\": \"SIEVE\", \"from\": \"0\", \"to\": \"2147483642\", \"pageSize\": \"1000\"}";
+		}
+		//only the body is read, every call gets a fresh reader over it
+		httpRequest = (HttpServletRequest) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+					if ("getReader".equals(method.getName())) {
+						return new BufferedReader(new StringReader(payload));
+					}
+					throw new UnsupportedOperationException(method.getName());
+				});
+	}
+
+	@Benchmark
+	public Set<Error> parse() throws IOException {
+		Request request = servlet.readRequest(httpRequest);
+		return servlet.validateRequest(request);
+	}
+}
@@ -0,0 +1,110 @@
+package com.therdl.prime.calc.model;
+
+import com.therdl.prime.calc.alg.MemoryGovernor;
+import com.therdl.prime.calc.alg.Scheduler;
+import com.therdl.prime.calc.alg.sieve.PrimeCache;
+import com.therdl.prime.calc.alg.sieve.PrimeTable;
+import com.therdl.prime.calc.alg.sieve.SieveAlg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Times the serialization of a response listing the primes up to a ladder of limits, both building the whole payload
+ * with {@link Response#getPayload()} and streaming it with {@link Response#writePayload(OutputStream)}, in JSON and
+ * in each binary {@link Encoding}. The primes are sieved once up front.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseBenchmark {
+
+	@Param({"10000", "1000000", "10000000"})
+	private long limit;
+
+	private Response response;
+
+	@Setup
+	public void setUp() throws TimeoutException, InterruptedException {
+		SieveAlg sieveAlg = new SieveAlg(new PrimeCache(0), new PrimeTable(""), new Scheduler(1),
+				new MemoryGovernor(0, 16));
+		Map<String, Object> contents = new HashMap<>();
+		contents.put(ResponseField.LIMIT.getLabel(), limit);
+		contents.put(ResponseField.PRIMES.getLabel(),
+				sieveAlg.process(0, limit, System.nanoTime() + TimeUnit.MINUTES.toNanos(1)));
+		response = new Response();
+		response.setContents(contents);
+	}
+
+	/**
+	 * The response in each encoding, JSON included to compare against
+	 */
+	@State(Scope.Benchmark)
+	public static class Encoded {
+
+		@Param({"JSON", "INT32", "INT64", "VARINT", "BITMAP"})
+		private Encoding encoding;
+
+		private Response response;
+
+		@Setup
+		public void setUp(ResponseBenchmark benchmark) {
+			response = new Response();
+			response.setContents(benchmark.response.getContents());
+			response.setEncoding(encoding, 0, benchmark.limit);
+		}
+	}
+
+	@Benchmark
+	public String getPayload() {
+		return response.getPayload();
+	}
+
+	@Benchmark
+	public long writePayload() throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		response.writePayload(out);
+		return out.count;
+	}
+
+	@Benchmark
+	public long writeEncoded(Encoded encoded) throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		encoded.response.writePayload(out);
+		return out.count;
+	}
+
+	//stands in for the servlet output stream, only the bytes written are kept
+	private static class CountingOutputStream extends OutputStream {
+
+		private long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
@@ -1,18 +1,62 @@
 package com.therdl.prime.calc;
 
+import com.google.inject.name.Names;
 import com.google.inject.servlet.ServletModule;
+import com.therdl.prime.calc.alg.sieve.PrimeCache;
+import com.therdl.prime.calc.alg.sieve.PrimeTable;
 import com.therdl.prime.calc.api.DispatcherServlet;
+import com.therdl.prime.calc.api.MetricsServlet;
+import com.therdl.prime.calc.api.NthPrimeServlet;
+import com.therdl.prime.calc.api.PrimalityServlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
 
 /**
  * Guice dependency injection module for the prime numbers calculator service
  * For more information please see https://github.com/google/guice/wiki/GettingStarted
+ * The configuration in prime-calc.properties is bound to @Named constants, each property can be overridden with a
+ * system property of the same name.
  * Created by Alex on 22/04/2016.
  */
 public class PrimeCalcServletModule extends ServletModule {
 
+	public static final String CONFIG_FILE = "/prime-calc.properties";
+
 	@Override
 	protected void configureServlets() {
+		Names.bindProperties(binder(), loadConfig());
+		bind(PrimeCache.class);
+		//mapped at startup so the first requests are already served from the table
+		bind(PrimeTable.class).asEagerSingleton();
+
 		bind(DispatcherServlet.class);
 		serve("/v1/primeCalc").with(DispatcherServlet.class);
+
+		bind(PrimalityServlet.class);
+		serve("/v1/isPrime").with(PrimalityServlet.class);
+
+		bind(NthPrimeServlet.class);
+		serve("/v1/nthPrime").with(NthPrimeServlet.class);
+
+		bind(MetricsServlet.class);
+		serve("/v1/metrics").with(MetricsServlet.class);
+	}
+
+	private Properties loadConfig() {
+		Properties config = new Properties();
+		try (InputStream in = PrimeCalcServletModule.class.getResourceAsStream(CONFIG_FILE)) {
+			config.load(in);
+		} catch (IOException e) {
+			addError("Could not load " + CONFIG_FILE, e);
+		}
+		config.stringPropertyNames().forEach(name -> {
+			String override = System.getProperty(name);
+			if (override != null) {
+				config.setProperty(name, override);
+			}
+		});
+		return config;
 	}
 }
@@ -2,17 +2,25 @@ package com.therdl.prime.calc;
 
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.name.Names;
 import com.google.inject.servlet.GuiceFilter;
+import com.therdl.prime.calc.alg.MemoryGovernor;
+import com.therdl.prime.calc.alg.sieve.PrimeCache;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import javax.servlet.DispatcherType;
+import java.lang.management.ManagementFactory;
 import java.util.EnumSet;
 
 /**
@@ -28,7 +36,8 @@ public class ServiceControl {
 		PrimeCalcServletModule servletModule = new PrimeCalcServletModule();
 		//we create the injector before the server start
 		Injector injector = Guice.createInjector(servletModule);
-		Server server = initServer();
+		registerMBeans(injector);
+		Server server = initServer(injector);
 		try {
 			//wait until the server exits
 			server.join();
@@ -40,8 +49,22 @@ public class ServiceControl {
 		}
 	}
 
-	private static Server initServer() {
-		QueuedThreadPool threadPool = new QueuedThreadPool(20, 1);
+	//the management beans let us look at the service internals over JMX
+	private static void registerMBeans(Injector injector) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(injector.getInstance(PrimeCache.class),
+					new ObjectName("com.therdl.prime.calc:type=PrimeCache"));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(injector.getInstance(MemoryGovernor.class),
+					new ObjectName("com.therdl.prime.calc:type=MemoryGovernor"));
+		} catch (JMException e) {
+			log.error(e.getMessage(), e);
+		}
+	}
+
+	//the Jetty threads only read, validate and write, the primes are calculated on the compute pool
+	private static Server initServer(Injector injector) {
+		QueuedThreadPool threadPool = new QueuedThreadPool(getConfig(injector, "server.maxThreads"),
+				getConfig(injector, "server.minThreads"));
 		Server server = new Server(threadPool);
 
 		ServerConnector http = new ServerConnector(server);
@@ -52,11 +75,18 @@ public class ServiceControl {
 
 		ServletContextHandler servletContextHandler = new ServletContextHandler(server, "/",
 				ServletContextHandler.SESSIONS);
-		servletContextHandler.addFilter(GuiceFilter.class, "/*", EnumSet.allOf(DispatcherType.class));
+		FilterHolder guiceFilter = servletContextHandler.addFilter(GuiceFilter.class, "/*",
+				EnumSet.allOf(DispatcherType.class));
+		//the servlets complete their responses from the compute pool
+		guiceFilter.setAsyncSupported(true);
 
 		// We must add DefaultServlet or our server will always return 404s
 		servletContextHandler.addServlet(DefaultServlet.class, "/");
 
 		return server;
 	}
+
+	private static int getConfig(Injector injector, String name) {
+		return Integer.parseInt(injector.getInstance(Key.get(String.class, Names.named(name))));
+	}
 }
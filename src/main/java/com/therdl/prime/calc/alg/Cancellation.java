@@ -0,0 +1,25 @@
+package com.therdl.prime.calc.alg;
+
+/**
+ * The token the tasks of a computation check between units of work, such as a sieve segment. Once the computation
+ * is cancelled, because it timed out, failed or its request went away, its tasks return at the next check and give
+ * the {@link Scheduler} threads and their memory back.
+ */
+public class Cancellation {
+
+	private volatile boolean cancelled;
+
+	/**
+	 * Cancels the computation, the tasks stop at their next check
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return true once the computation has been cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
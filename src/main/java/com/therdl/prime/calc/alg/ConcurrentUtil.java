@@ -1,7 +1,5 @@
 package com.therdl.prime.calc.alg;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 
@@ -11,19 +9,6 @@ import java.util.concurrent.locks.Lock;
  */
 public class ConcurrentUtil {
 
-	/**
-	 * Elegantly shuts down an executor
-	 *
-	 * @param executor the executor to shut down
-	 */
-	public static void stop(ExecutorService executor) {
-		try {
-			executor.shutdown();
-		} finally {
-			executor.shutdownNow();
-		}
-	}
-
 	/**
 	 * Utility method for one thread to signal done based on a lock and condition pair
 	 *
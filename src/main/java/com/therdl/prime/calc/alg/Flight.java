@@ -0,0 +1,155 @@
+package com.therdl.prime.calc.alg;
+
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A computation of the primes in a range that other requests can subscribe to while it is running, see
+ * {@link Flights}. The computation appends its primes in order as each prefix of the range becomes final, so a
+ * subscriber asking for a part of the range is answered as soon as that part is done.
+ */
+public class Flight {
+
+	private final long from;
+	private final long to;
+	private final long deadline;
+
+	private final Lock lock = new ReentrantLock();
+	private final Condition progress = lock.newCondition();
+
+	//guarded by the lock
+	private final Primes primes = new Primes();
+	private long finalTo;
+	private Exception failure;
+	private boolean abandoned;
+
+	/**
+	 * @param from     the lower limit (inclusive) of the range
+	 * @param to       the upper limit (inclusive) of the range
+	 * @param deadline the {@link System#nanoTime()} by which the computation has to finish
+	 */
+	public Flight(long from, long to, long deadline) {
+		this.from = from;
+		this.to = to;
+		this.deadline = deadline;
+		this.finalTo = from - 1;
+	}
+
+	/**
+	 * @param from the lower limit (inclusive) of a range
+	 * @param to   the upper limit (inclusive) of a range
+	 * @return true if the given range is part of the range of this flight
+	 */
+	public boolean covers(long from, long to) {
+		return this.from <= from && to <= this.to;
+	}
+
+	/**
+	 * @param deadline the {@link System#nanoTime()} by which a subscriber needs its primes
+	 * @return true if the computation is allowed to run at least until the given deadline
+	 */
+	public boolean outlasts(long deadline) {
+		return this.deadline - deadline >= 0;
+	}
+
+	/**
+	 * Appends the next primes found and wakes up the subscribers waiting for them. The primes below the range of
+	 * the flight are left out
+	 *
+	 * @param next the primes following the ones already appended, up to the given number
+	 * @param upTo every prime up to this number (inclusive) has now been appended
+	 */
+	public void append(Primes next, long upTo) {
+		try {
+			lock.lock();
+			primes.addAll(next.range(Math.max(from, finalTo + 1), upTo));
+			finalTo = Math.max(finalTo, upTo);
+			progress.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Marks the flight as failed, the subscribers waiting for a part of the range which is not final yet get the
+	 * failure
+	 *
+	 * @param e the reason the computation failed
+	 */
+	public void fail(Exception e) {
+		try {
+			lock.lock();
+			failure = e;
+			progress.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Marks the flight as abandoned by its leader for a reason of its own, such as its client going away, the
+	 * subscribers waiting for a part of the range which is not final yet have to compute it themselves
+	 */
+	public void abandon() {
+		try {
+			lock.lock();
+			abandoned = true;
+			progress.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits for a part of the range to become final
+	 *
+	 * @param from     the lower limit (inclusive) of the part
+	 * @param to       the upper limit (inclusive) of the part
+	 * @param deadline the {@link System#nanoTime()} to wait until
+	 * @return the primes in the part, null if the flight was abandoned before the part became final
+	 * @throws TimeoutException if the part is not final by the deadline or the computation timed out before, a
+	 *                          {@link PartialResultException} if a prefix of the part is final
+	 */
+	public Primes await(long from, long to, long deadline) throws TimeoutException, InterruptedException {
+		try {
+			lock.lock();
+			long nanosLeft = deadline - System.nanoTime();
+			while (finalTo < to) {
+				if (failure instanceof TimeoutException || nanosLeft <= 0) {
+					throw timedOut(from, to);
+				}
+				if (failure != null) {
+					throw new IllegalStateException("The computation of the primes failed", failure);
+				}
+				if (abandoned) {
+					return null;
+				}
+				nanosLeft = progress.awaitNanos(nanosLeft);
+			}
+			return primes.range(from, to);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param from the lower limit (inclusive) of a part of the range
+	 * @param to   the upper limit (inclusive) of the part
+	 * @return the exception reporting that the part is not final in time, a {@link PartialResultException} holding
+	 * the primes of the final prefix of the part if there is one
+	 */
+	public TimeoutException timedOut(long from, long to) {
+		try {
+			lock.lock();
+			long completeUpTo = Math.min(finalTo, to);
+			if (completeUpTo < from) {
+				return new TimeoutException("Processing timed out");
+			}
+			return new PartialResultException(primes.range(from, completeUpTo), completeUpTo);
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.therdl.prime.calc.alg;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Single flight coalescing of the requests to an algorithm. A request whose range is part of the range of a
+ * {@link Flight} already running subscribes to it instead of starting its own computation, and is answered as soon as
+ * its part is final. Identical requests arriving together therefore share one computation, and so do the ones asking
+ * for a prefix of a larger running request. A flight is only joined if it is allowed to run as long as the subscriber
+ * is willing to wait, and a request timing out is answered with the prefix it got through, see
+ * {@link PartialResultException}. A flight whose leader is interrupted or shed is abandoned rather than failed, its
+ * subscribers then run the computation themselves, and only a computation error reaches them.
+ */
+public class Flights {
+
+	private static final Logger log = LoggerFactory.getLogger(Flights.class);
+
+	//guarded by this
+	private final List<Flight> inFlight = new ArrayList<>();
+
+	/**
+	 * The computation of the primes in a range, appending them to the flight as they become final
+	 */
+	public interface Computation {
+		void compute(Flight flight) throws TimeoutException, InterruptedException;
+	}
+
+	/**
+	 * Subscribes to a running flight covering the range, or else runs the computation as a new flight
+	 *
+	 * @param from        the lower limit (inclusive) of the range
+	 * @param to          the upper limit (inclusive) of the range
+	 * @param deadline    the {@link System#nanoTime()} by which the primes are needed
+	 * @param computation the computation to run if no flight covers the range, it must append every prime up to 'to'
+	 * @return the primes in the range
+	 * @throws TimeoutException if the range is not done by the deadline, a {@link PartialResultException} if a
+	 *                          prefix of it is
+	 */
+	public Primes run(long from, long to, long deadline, Computation computation)
+			throws TimeoutException, InterruptedException {
+		while (true) {
+			Flight flight = null;
+			boolean leader = false;
+			synchronized (this) {
+				for (Flight running : inFlight) {
+					if (running.covers(from, to) && running.outlasts(deadline)) {
+						flight = running;
+						break;
+					}
+				}
+				if (flight == null) {
+					flight = new Flight(from, to, deadline);
+					inFlight.add(flight);
+					leader = true;
+				}
+			}
+			if (leader) {
+				return lead(flight, from, to, deadline, computation);
+			}
+			log.debug("Subscribing to the flight covering [{}, {}]", from, to);
+			Primes primes = flight.await(from, to, deadline);
+			if (primes != null) {
+				return primes;
+			}
+			log.debug("The flight covering [{}, {}] was abandoned, running it again", from, to);
+		}
+	}
+
+	private Primes lead(Flight flight, long from, long to, long deadline, Computation computation)
+			throws TimeoutException, InterruptedException {
+		try {
+			computation.compute(flight);
+		} catch (TimeoutException e) {
+			flight.fail(e);
+			throw flight.timedOut(from, to);
+		} catch (InterruptedException | RejectedExecutionException e) {
+			//the leader's own client went away or the leader was shed, which says nothing about the subscribers
+			land(flight);
+			flight.abandon();
+			throw e;
+		} catch (RuntimeException e) {
+			flight.fail(e);
+			throw e;
+		} finally {
+			land(flight);
+		}
+		return flight.await(from, to, deadline);
+	}
+
+	//the subscribers of an abandoned flight must not find it again once they are woken up
+	private synchronized void land(Flight flight) {
+		inFlight.remove(flight);
+	}
+}
@@ -0,0 +1,237 @@
+package com.therdl.prime.calc.alg;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Accounts for the memory of every computation in flight, their sieve segments, result buffers and working arrays,
+ * against the budget set by 'memory.budgetBytes'. A computation reserves its bytes before allocating them, asking for
+ * the footprint it would like and the smallest one it can work with:
+ * <ul>
+ * <li>if the footprint it would like fits it gets it</li>
+ * <li>if only part of it fits, as long as that covers the smallest one, it gets what fits and works with fewer
+ * buffers</li>
+ * <li>otherwise it waits for other computations to release theirs, up to 'memory.maxWaiting' computations wait at a
+ * time and the ones after that are turned away</li>
+ * </ul>
+ * A computation is always let through when nothing else is reserved, so one larger than the budget still runs on its
+ * own. The primes a computation answers with outlive it, whoever holds them until they are written out accounts for
+ * them, please see {@link #account(long)}.
+ */
+@Singleton
+public class MemoryGovernor implements MemoryGovernorMXBean {
+
+	private static final Logger log = LoggerFactory.getLogger(MemoryGovernor.class);
+
+	private final long budget;
+
+	private final int maxWaiting;
+
+	private final Lock lock = new ReentrantLock();
+	private final Condition released = lock.newCondition();
+
+	//guarded by the lock
+	private long reserved;
+	private long peakReserved;
+	private int reservations;
+	private int waiting;
+	private long fallbacks;
+	private long rejections;
+
+	/**
+	 * @param budget     the bytes the computations in flight can reserve together, 0 for half of the maximum heap
+	 * @param maxWaiting the most computations waiting for memory at a time
+	 */
+	@Inject
+	public MemoryGovernor(@Named("memory.budgetBytes") long budget, @Named("memory.maxWaiting") int maxWaiting) {
+		this.budget = budget > 0 ? budget : Runtime.getRuntime().maxMemory() / 2;
+		this.maxWaiting = maxWaiting;
+	}
+
+	/**
+	 * The bytes reserved by a computation, released when it is closed
+	 */
+	public class Reservation implements AutoCloseable {
+
+		private final long bytes;
+
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		private Reservation(long bytes) {
+			this.bytes = bytes;
+		}
+
+		/**
+		 * @return the bytes granted, between the smallest and the largest footprint asked for
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * Releases the bytes and wakes up the computations waiting for memory, only the first call counts
+		 */
+		@Override
+		public void close() {
+			if (closed.compareAndSet(false, true)) {
+				release(bytes);
+			}
+		}
+	}
+
+	/**
+	 * Reserves memory for a computation, waiting if not even its smallest footprint fits
+	 *
+	 * @param minBytes the smallest footprint the computation can work with
+	 * @param maxBytes the footprint the computation would like
+	 * @param deadline the {@link System#nanoTime()} to wait until
+	 * @return the reservation, to close once the memory is no longer held
+	 * @throws TimeoutException           if the memory is not free by the deadline
+	 * @throws RejectedExecutionException if too many computations are waiting already
+	 */
+	public Reservation reserve(long minBytes, long maxBytes, long deadline)
+			throws TimeoutException, InterruptedException {
+		try {
+			lock.lock();
+			long nanosLeft = deadline - System.nanoTime();
+			while (reserved > 0 && reserved + minBytes > budget) {
+				if (waiting >= maxWaiting) {
+					rejections++;
+					log.debug("Turning away a computation of {} bytes with {} waiting", minBytes, waiting);
+					throw new RejectedExecutionException("Too many computations waiting for memory");
+				}
+				if (nanosLeft <= 0) {
+					log.debug("Timed out waiting for memory ->");
+					throw new TimeoutException("Processing timed out");
+				}
+				waiting++;
+				try {
+					nanosLeft = released.awaitNanos(nanosLeft);
+				} finally {
+					waiting--;
+				}
+			}
+			long bytes = Math.max(minBytes, Math.min(maxBytes, budget - reserved));
+			if (bytes < maxBytes) {
+				fallbacks++;
+				log.debug("Granting {} of the {} bytes asked for", bytes, maxBytes);
+			}
+			reserved += bytes;
+			peakReserved = Math.max(peakReserved, reserved);
+			reservations++;
+			return new Reservation(bytes);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Accounts for memory already allocated, such as the primes of a response waiting to be written, without waiting:
+	 * the computations reserving after it wait for it to be released instead
+	 *
+	 * @param bytes the bytes held
+	 * @return the reservation, to close once the memory is no longer held
+	 */
+	public Reservation account(long bytes) {
+		try {
+			lock.lock();
+			reserved += bytes;
+			peakReserved = Math.max(peakReserved, reserved);
+			reservations++;
+			return new Reservation(bytes);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void release(long bytes) {
+		try {
+			lock.lock();
+			reserved -= bytes;
+			reservations--;
+			released.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long getBudget() {
+		return budget;
+	}
+
+	@Override
+	public long getReserved() {
+		try {
+			lock.lock();
+			return reserved;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long getHeadroom() {
+		return budget - getReserved();
+	}
+
+	@Override
+	public long getPeakReserved() {
+		try {
+			lock.lock();
+			return peakReserved;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int getReservations() {
+		try {
+			lock.lock();
+			return reservations;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int getWaiting() {
+		try {
+			lock.lock();
+			return waiting;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long getFallbacks() {
+		try {
+			lock.lock();
+			return fallbacks;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long getRejections() {
+		try {
+			lock.lock();
+			return rejections;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
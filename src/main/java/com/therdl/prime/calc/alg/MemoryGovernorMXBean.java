@@ -0,0 +1,48 @@
+package com.therdl.prime.calc.alg;
+
+/**
+ * The management interface of the {@link MemoryGovernor}, exposed over JMX so the headroom can be watched
+ */
+public interface MemoryGovernorMXBean {
+
+	/**
+	 * @return the bytes the computations in flight can reserve together
+	 */
+	long getBudget();
+
+	/**
+	 * @return the bytes reserved by the computations in flight
+	 */
+	long getReserved();
+
+	/**
+	 * @return the bytes left to reserve
+	 */
+	long getHeadroom();
+
+	/**
+	 * @return the most bytes reserved at any one time
+	 */
+	long getPeakReserved();
+
+	/**
+	 * @return the number of reservations held
+	 */
+	int getReservations();
+
+	/**
+	 * @return the number of computations waiting for memory
+	 */
+	int getWaiting();
+
+	/**
+	 * @return the number of reservations granted less than asked for, the computations fell back to a smaller
+	 * footprint
+	 */
+	long getFallbacks();
+
+	/**
+	 * @return the number of computations turned away because the waiting queue was full
+	 */
+	long getRejections();
+}
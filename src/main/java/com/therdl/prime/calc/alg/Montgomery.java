@@ -0,0 +1,130 @@
+package com.therdl.prime.calc.alg;
+
+/**
+ * Modular arithmetic for a fixed odd 64 bit modulus using Montgomery multiplication
+ * https://en.wikipedia.org/wiki/Montgomery_modular_multiplication
+ * Values are kept in Montgomery form (a * 2^64 mod n) so a multiplication costs a few 64 bit multiplications and no
+ * division. Every value passed in and returned has to be in [0, n).
+ */
+public class Montgomery {
+
+	private final long n;
+
+	//n^-1 mod 2^64
+	private final long inverse;
+
+	//2^64 mod n and 2^128 mod n, the Montgomery forms of 1 and 2^64
+	private final long one;
+	private final long r2;
+
+	/**
+	 * @param n the modulus, odd and below 2^63
+	 */
+	public Montgomery(long n) {
+		if ((n & 1) == 0 || n < 3) {
+			throw new IllegalArgumentException("The modulus must be odd and at least 3: " + n);
+		}
+		this.n = n;
+		//Newton's iteration doubles the correct low bits each step, n is its own inverse mod 8
+		long x = n;
+		for (int i = 0; i < 5; i++) {
+			x *= 2 - n * x;
+		}
+		this.inverse = x;
+		this.one = Long.remainderUnsigned(-n, n);
+		long r = one;
+		for (int i = 0; i < 64; i++) {
+			r = add(r, r);
+		}
+		this.r2 = r;
+	}
+
+	/**
+	 * @return the modulus
+	 */
+	public long getModulus() {
+		return n;
+	}
+
+	/**
+	 * @return 1 in Montgomery form
+	 */
+	public long one() {
+		return one;
+	}
+
+	/**
+	 * @param a a value in [0, n)
+	 * @return the value in Montgomery form
+	 */
+	public long toMontgomery(long a) {
+		return multiply(a, r2);
+	}
+
+	/**
+	 * @param a a value in Montgomery form
+	 * @return the plain value
+	 */
+	public long fromMontgomery(long a) {
+		return multiply(a, 1);
+	}
+
+	/**
+	 * @return a * b mod n in Montgomery form, both values being in Montgomery form
+	 */
+	public long multiply(long a, long b) {
+		long low = a * b;
+		long high = multiplyHigh(a, b);
+		//low - q * n is 0 mod 2^64 so only the high words are left, (a * b - q * n) / 2^64
+		long q = low * inverse;
+		long qn = multiplyHigh(q, n);
+		return Long.compareUnsigned(high, qn) < 0 ? high - qn + n : high - qn;
+	}
+
+	/**
+	 * @return a + b mod n, in either form
+	 */
+	public long add(long a, long b) {
+		long sum = a + b;
+		//the sum of two values below 2^63 fits in 64 unsigned bits
+		return Long.compareUnsigned(sum, n) >= 0 ? sum - n : sum;
+	}
+
+	/**
+	 * @return a - b mod n, in either form
+	 */
+	public long subtract(long a, long b) {
+		return a >= b ? a - b : a - b + n;
+	}
+
+	/**
+	 * @return base ^ exponent mod n in Montgomery form, the base being in Montgomery form
+	 */
+	public long pow(long base, long exponent) {
+		long result = one;
+		while (exponent != 0) {
+			if ((exponent & 1) == 1) {
+				result = multiply(result, base);
+			}
+			base = multiply(base, base);
+			exponent >>>= 1;
+		}
+		return result;
+	}
+
+	/**
+	 * The high 64 bits of the unsigned 128 bit product, Java 8 has no Math.multiplyHigh
+	 *
+	 * @return the high word of a * b, both taken as unsigned
+	 */
+	public static long multiplyHigh(long a, long b) {
+		long a0 = a & 0xFFFFFFFFL;
+		long a1 = a >>> 32;
+		long b0 = b & 0xFFFFFFFFL;
+		long b1 = b >>> 32;
+		long low = a0 * b0;
+		long middle1 = a1 * b0 + (low >>> 32);
+		long middle2 = a0 * b1 + (middle1 & 0xFFFFFFFFL);
+		return a1 * b1 + (middle1 >>> 32) + (middle2 >>> 32);
+	}
+}
@@ -0,0 +1,147 @@
+package com.therdl.prime.calc.alg;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Wraps around the worker threads finding the primes of a range block by block. The range is split in blocks of the
+ * same width handed out in order to the workers on the {@link Scheduler}, so the results fill up from the bottom, and
+ * as each prefix of the range is complete it is appended to the {@link Flight} if there is one. The blocks done out
+ * of order wait for their turn. How the primes of a block are found is up to the {@link Worker}s of the subclass.
+ */
+public abstract class OrderedWorkers {
+
+	private static final Logger log = LoggerFactory.getLogger(OrderedWorkers.class);
+
+	/**
+	 * Finds the primes of the blocks picked up by a worker thread, one after the other
+	 */
+	protected interface Worker {
+
+		/**
+		 * @param low  the lower limit (inclusive) of the block
+		 * @param high the upper limit (inclusive) of the block
+		 * @return the primes in the block
+		 */
+		Primes process(long low, long high);
+	}
+
+	private final long from;
+	private final long to;
+	private final int blockSize;
+	private final Flight flight;
+
+	//the primes found in each block, indexed by the block number
+	private final Primes[] blockPrimes;
+
+	//the next block to be picked up by a worker
+	private final AtomicInteger nextBlock = new AtomicInteger(0);
+	private final AtomicInteger blocksLeft;
+	//the next block to be appended to the flight, guarded by the lock
+	private int nextAppended = 0;
+
+	private final Scheduler scheduler;
+	private final Cancellation cancellation = new Cancellation();
+
+	private final Lock lock = new ReentrantLock();
+	private final Condition done = lock.newCondition();
+
+	/**
+	 * @param from      the lower limit (inclusive) of the range
+	 * @param to        the upper limit (inclusive) of the range
+	 * @param blockSize the number of integers in a block
+	 * @param flight    the flight the blocks are appended to in order, null if there is none
+	 * @param scheduler the pool the workers run on
+	 */
+	protected OrderedWorkers(long from, long to, int blockSize, Flight flight, Scheduler scheduler) {
+		this.from = from;
+		this.to = to;
+		this.blockSize = blockSize;
+		this.flight = flight;
+		this.scheduler = scheduler;
+		int blocks = (int) ((to - from) / blockSize + 1);
+		blockPrimes = new Primes[blocks];
+		blocksLeft = new AtomicInteger(blocks);
+	}
+
+	/**
+	 * @return a new worker, one per worker thread so it can keep its buffers from one block to the next
+	 */
+	protected abstract Worker newWorker();
+
+	/**
+	 * Starts the workers, one per scheduler thread unless fewer are allowed, and waits for every block. The workers
+	 * are cancelled on the way out, they stop at the next block.
+	 *
+	 * @param maxWorkers the most workers allowed
+	 * @param deadline   the {@link System#nanoTime()} by which every block has to be done
+	 * @return the primes found in each block, indexed by the block number
+	 * @throws TimeoutException if the blocks are not all done by the deadline
+	 */
+	public Primes[] run(int maxWorkers, long deadline) throws TimeoutException, InterruptedException {
+		try {
+			lock.lock();
+			int threads = Math.min(maxWorkers, Math.min(scheduler.getThreads(), blockPrimes.length));
+			log.debug("Starting {} workers for {} blocks, waiting for DONE signal", threads, blockPrimes.length);
+			for (int i = 0; i < threads; i++) {
+				scheduler.execute(this::work);
+			}
+			long nanosLeft = deadline - System.nanoTime();
+			while (blocksLeft.get() > 0) {
+				if (nanosLeft <= 0) {
+					log.debug("Timed out ->");
+					throw new TimeoutException("Processing timed out");
+				}
+				nanosLeft = done.awaitNanos(nanosLeft);
+			}
+			log.debug("Picked up DONE signal");
+		} finally {
+			lock.unlock();
+			log.debug("Cancelling the workers");
+			cancellation.cancel();
+		}
+		return blockPrimes;
+	}
+
+	private void work() {
+		Worker worker = newWorker();
+		int block;
+		while ((block = nextBlock.getAndIncrement()) < blockPrimes.length) {
+			if (cancellation.isCancelled()) {
+				log.debug("Worker cancelled, exiting");
+				return;
+			}
+			long low = from + (long) block * blockSize;
+			long high = Math.min(to, low + blockSize - 1);
+			blockPrimes[block] = worker.process(low, high);
+			log.debug("Done block {} [{}, {}]", block, low, high);
+			if (flight != null) {
+				appendToFlight();
+			}
+			if (blocksLeft.decrementAndGet() == 0) {
+				log.debug("Workers signalling DONE");
+				ConcurrentUtil.signalDone(lock, done);
+			}
+		}
+	}
+
+	//appends the blocks that are next in line, the ones done out of order wait for their turn
+	private void appendToFlight() {
+		try {
+			lock.lock();
+			while (nextAppended < blockPrimes.length && blockPrimes[nextAppended] != null) {
+				long high = Math.min(to, from + (long) (nextAppended + 1) * blockSize - 1);
+				flight.append(blockPrimes[nextAppended], high);
+				nextAppended++;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package com.therdl.prime.calc.alg;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A timeout of a computation that had already proven the primes of a prefix of the range. The prefix is handed back
+ * so the caller can answer with it and continue from the end of it later instead of starting over.
+ */
+public class PartialResultException extends TimeoutException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient Primes primes;
+
+	private final long completeUpTo;
+
+	/**
+	 * @param primes       the primes from the start of the range up to the given number
+	 * @param completeUpTo every prime up to this number (inclusive) is in the primes
+	 */
+	public PartialResultException(Primes primes, long completeUpTo) {
+		super("Processing timed out with the primes up to " + completeUpTo + " complete");
+		this.primes = primes;
+		this.completeUpTo = completeUpTo;
+	}
+
+	/**
+	 * @return the primes from the start of the range up to {@link #getCompleteUpTo()}
+	 */
+	public Primes getPrimes() {
+		return primes;
+	}
+
+	/**
+	 * @return the number up to which (inclusive) every prime is in {@link #getPrimes()}
+	 */
+	public long getCompleteUpTo() {
+		return completeUpTo;
+	}
+}
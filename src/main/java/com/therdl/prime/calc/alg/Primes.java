@@ -0,0 +1,462 @@
+package com.therdl.prime.calc.alg;
+
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongConsumer;
+
+/**
+ * A compact, ordered list of prime numbers that the algorithms append to. The primes are stored in chunks, either
+ * holding a 64 bit base and the int offsets of its primes from that base, so there is no boxing and every prime
+ * costs 4 bytes, or pointing at a window of an odd-only primality bitmap such as the memory mapped prime table.
+ * Chunks are never modified once they are full so they can be shared between lists, which makes appending a whole
+ * segment of primes or taking a range of the list cheap.
+ */
+public class Primes implements Iterable<Long> {
+
+	/**
+	 * The memory taken by each prime in the list
+	 */
+	public static final int BYTES_PER_PRIME = 4;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final List<Chunk> chunks = new ArrayList<>();
+
+	//the index of the first prime of each chunk, in step with the chunks list
+	private int[] chunkStarts = new int[INITIAL_CAPACITY];
+
+	private int size;
+
+	/**
+	 * Estimates from above the memory taken by the primes in a range, going by the bound pi(x) < x / (ln(x) - 1.1)
+	 *
+	 * @param from the lower limit (inclusive) of the range
+	 * @param to   the upper limit (inclusive) of the range
+	 * @return the bytes the primes in the range are expected to take at most
+	 */
+	public static long estimateBytes(long from, long to) {
+		if (to < from) {
+			return 0;
+		}
+		double width = (double) to - from + 1;
+		return (long) (width / (Math.log(Math.max(to, 60184)) - 1.1)) * BYTES_PER_PRIME;
+	}
+
+	/**
+	 * Appends a prime, which has to be greater than every prime already in the list
+	 *
+	 * @param prime the prime to append
+	 */
+	public void add(long prime) {
+		Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+		OffsetChunk tail;
+		if (last instanceof OffsetChunk && !last.shared && prime - ((OffsetChunk) last).base <= Integer.MAX_VALUE) {
+			tail = (OffsetChunk) last;
+		} else {
+			tail = new OffsetChunk(prime, new int[INITIAL_CAPACITY], 0, 0);
+			addChunk(tail);
+		}
+		tail.append(prime);
+		size++;
+	}
+
+	/**
+	 * Appends a chunk of primes, which have to be greater than every prime already in the list. The offsets array is
+	 * taken over by the list and must not be changed afterwards
+	 *
+	 * @param base    the value the offsets are relative to
+	 * @param offsets the primes minus the base, in order
+	 * @param length  the number of offsets in use
+	 */
+	public void add(long base, int[] offsets, int length) {
+		addShared(new OffsetChunk(base, offsets, 0, length));
+	}
+
+	/**
+	 * Appends the primes flagged in a window of an odd-only primality bitmap, where bit i stands for the number
+	 * low + 2 * i + 1 and a set bit means prime. The primes have to be greater than every prime already in the list.
+	 * The bitmap is referenced, not copied, and must not be changed afterwards
+	 *
+	 * @param low      the even number the bitmap is relative to
+	 * @param words    the bitmap, bit i being bit i % 64 of word i / 64
+	 * @param firstBit the first bit of the window (inclusive)
+	 * @param endBit   the end of the window (exclusive)
+	 */
+	public void add(long low, LongBuffer words, long firstBit, long endBit) {
+		addShared(new BitmapChunk(low, words, firstBit, endBit));
+	}
+
+	/**
+	 * Appends all the primes of the given list, which have to be greater than every prime already in this list.
+	 * The chunks are shared, not copied
+	 *
+	 * @param primes the primes to append
+	 */
+	public void addAll(Primes primes) {
+		for (Chunk chunk : primes.chunks) {
+			addShared(chunk);
+		}
+	}
+
+	/**
+	 * @return the number of primes in the list
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if there are no primes in the list
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @param index the index of the prime in the list
+	 * @return the prime at the given index
+	 */
+	public long get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+		int chunk = Arrays.binarySearch(chunkStarts, 0, chunks.size(), index);
+		if (chunk < 0) {
+			chunk = -chunk - 2;
+		}
+		return chunks.get(chunk).get(index - chunkStarts[chunk]);
+	}
+
+	/**
+	 * @return the first prime in the list
+	 */
+	public long first() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return chunks.get(0).first();
+	}
+
+	/**
+	 * @return the last prime in the list
+	 */
+	public long last() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return chunks.get(chunks.size() - 1).last();
+	}
+
+	/**
+	 * Creates a new list holding the primes of this list that fall in the given range. The chunks are shared, not
+	 * copied, so this is cheap even for large lists
+	 *
+	 * @param from the lower limit (inclusive) of the range
+	 * @param to   the upper limit (inclusive) of the range
+	 * @return the primes in the range
+	 */
+	public Primes range(long from, long to) {
+		Primes range = new Primes();
+		for (Chunk chunk : chunks) {
+			if (chunk.length == 0 || chunk.last() < from) {
+				continue;
+			}
+			if (chunk.first() > to) {
+				break;
+			}
+			chunk.shared = true;
+			range.addShared(chunk.range(from, to));
+		}
+		return range;
+	}
+
+	/**
+	 * Performs the given action on every prime in order, without boxing
+	 *
+	 * @param action the action to perform
+	 */
+	public void forEachLong(LongConsumer action) {
+		for (Chunk chunk : chunks) {
+			chunk.forEachLong(action);
+		}
+	}
+
+	/**
+	 * @return an iterator over the primes in order
+	 */
+	@Override
+	public PrimitiveIterator.OfLong iterator() {
+		return new PrimitiveIterator.OfLong() {
+			private int chunk = 0;
+			private PrimitiveIterator.OfLong current;
+
+			@Override
+			public boolean hasNext() {
+				while (current == null || !current.hasNext()) {
+					if (chunk == chunks.size()) {
+						return false;
+					}
+					current = chunks.get(chunk++).iterator();
+				}
+				return true;
+			}
+
+			@Override
+			public long nextLong() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return current.nextLong();
+			}
+		};
+	}
+
+	private void addShared(Chunk chunk) {
+		if (chunk.length > 0) {
+			chunk.shared = true;
+			addChunk(chunk);
+			size += chunk.length;
+		}
+	}
+
+	private void addChunk(Chunk chunk) {
+		if (chunks.size() == chunkStarts.length) {
+			chunkStarts = Arrays.copyOf(chunkStarts, chunkStarts.length * 2);
+		}
+		chunkStarts[chunks.size()] = size;
+		chunks.add(chunk);
+	}
+
+	/**
+	 * A run of primes
+	 */
+	private abstract static class Chunk {
+		int length;
+
+		//once shared a chunk is never appended to again
+		boolean shared;
+
+		abstract long get(int index);
+
+		long first() {
+			return get(0);
+		}
+
+		long last() {
+			return get(length - 1);
+		}
+
+		//the primes of this chunk in the given range as a new chunk sharing the same storage
+		abstract Chunk range(long from, long to);
+
+		abstract void forEachLong(LongConsumer action);
+
+		abstract PrimitiveIterator.OfLong iterator();
+	}
+
+	/**
+	 * A run of primes stored as int offsets from a 64 bit base
+	 */
+	private static class OffsetChunk extends Chunk {
+		private final long base;
+		private int[] offsets;
+		private final int start;
+
+		OffsetChunk(long base, int[] offsets, int start, int length) {
+			this.base = base;
+			this.offsets = offsets;
+			this.start = start;
+			this.length = length;
+		}
+
+		void append(long prime) {
+			if (start + length == offsets.length) {
+				offsets = Arrays.copyOf(offsets, offsets.length * 2);
+			}
+			offsets[start + length++] = (int) (prime - base);
+		}
+
+		@Override
+		long get(int index) {
+			return base + offsets[start + index];
+		}
+
+		@Override
+		Chunk range(long from, long to) {
+			int first = indexOf(from);
+			int last = indexOf(to + 1);
+			return new OffsetChunk(base, offsets, start + first, Math.max(0, last - first));
+		}
+
+		@Override
+		void forEachLong(LongConsumer action) {
+			for (int i = start; i < start + length; i++) {
+				action.accept(base + offsets[i]);
+			}
+		}
+
+		@Override
+		PrimitiveIterator.OfLong iterator() {
+			return new PrimitiveIterator.OfLong() {
+				private int index = start;
+
+				@Override
+				public boolean hasNext() {
+					return index < start + length;
+				}
+
+				@Override
+				public long nextLong() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					return base + offsets[index++];
+				}
+			};
+		}
+
+		//the index of the first prime not below the given value
+		private int indexOf(long value) {
+			if (value <= base) {
+				return 0;
+			}
+			if (value - base > Integer.MAX_VALUE) {
+				return length;
+			}
+			int index = Arrays.binarySearch(offsets, start, start + length, (int) (value - base));
+			return (index < 0 ? -index - 1 : index) - start;
+		}
+	}
+
+	/**
+	 * A run of primes stored as the set bits in a window of an odd-only bitmap. Looking up a prime by index means
+	 * counting the bits of the words before it, walking the primes in order does not. The first and the last prime
+	 * are found once, as the list is ranged and appended to by them
+	 */
+	private static class BitmapChunk extends Chunk {
+		private final long low;
+		private final LongBuffer words;
+		private final long firstBit;
+		private final long endBit;
+		private final long first;
+		private final long last;
+
+		BitmapChunk(long low, LongBuffer words, long firstBit, long endBit) {
+			this.low = low;
+			this.words = words;
+			this.firstBit = firstBit;
+			this.endBit = Math.max(firstBit, endBit);
+			this.length = (int) countBits();
+			this.first = length > 0 ? low + 2 * nextBit(firstBit) + 1 : 0;
+			this.last = length > 0 ? low + 2 * lastBit() + 1 : 0;
+		}
+
+		@Override
+		long first() {
+			return first;
+		}
+
+		@Override
+		long last() {
+			return last;
+		}
+
+		@Override
+		long get(int index) {
+			long remaining = index;
+			for (long bit = firstBit; ; bit = (bit | 63) + 1) {
+				long word = window(bit);
+				int count = Long.bitCount(word);
+				if (remaining < count) {
+					for (; remaining > 0; remaining--) {
+						word &= word - 1;
+					}
+					return low + 2 * (bit + Long.numberOfTrailingZeros(word)) + 1;
+				}
+				remaining -= count;
+			}
+		}
+
+		@Override
+		Chunk range(long from, long to) {
+			return new BitmapChunk(low, words, Math.max(firstBit, bitOf(from)), Math.min(endBit, bitOf(to + 1)));
+		}
+
+		@Override
+		void forEachLong(LongConsumer action) {
+			for (long bit = nextBit(firstBit); bit < endBit; bit = nextBit(bit + 1)) {
+				action.accept(low + 2 * bit + 1);
+			}
+		}
+
+		@Override
+		PrimitiveIterator.OfLong iterator() {
+			return new PrimitiveIterator.OfLong() {
+				private long bit = nextBit(firstBit);
+
+				@Override
+				public boolean hasNext() {
+					return bit < endBit;
+				}
+
+				@Override
+				public long nextLong() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					long prime = low + 2 * bit + 1;
+					bit = nextBit(bit + 1);
+					return prime;
+				}
+			};
+		}
+
+		//the first bit standing for a number not below the given value
+		private long bitOf(long value) {
+			return value <= low ? 0 : (value - low) / 2;
+		}
+
+		//the first set bit from the given one on, or the end of the window if there is none
+		private long nextBit(long bit) {
+			while (bit < endBit) {
+				long word = words.get((int) (bit >>> 6)) >>> bit;
+				if (word != 0) {
+					return Math.min(endBit, bit + Long.numberOfTrailingZeros(word));
+				}
+				bit = (bit | 63) + 1;
+			}
+			return endBit;
+		}
+
+		//the last set bit of a window that has one
+		private long lastBit() {
+			long bit = endBit - 1;
+			while (true) {
+				long word = words.get((int) (bit >>> 6)) << (63 - (bit & 63));
+				if (word != 0) {
+					return bit - Long.numberOfLeadingZeros(word);
+				}
+				bit = (bit & ~63L) - 1;
+			}
+		}
+
+		//the bits of the word holding the given one from it on, up to the end of the window
+		private long window(long bit) {
+			long word = words.get((int) (bit >>> 6)) >>> bit;
+			long bits = Math.min(64 - (bit & 63), endBit - bit);
+			return bits == 64 ? word : word & ((1L << bits) - 1);
+		}
+
+		private long countBits() {
+			long count = 0;
+			for (long bit = firstBit; bit < endBit; bit = (bit | 63) + 1) {
+				count += Long.bitCount(window(bit));
+			}
+			return count;
+		}
+	}
+}
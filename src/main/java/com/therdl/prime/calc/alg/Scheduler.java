@@ -0,0 +1,75 @@
+package com.therdl.prime.calc.alg;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The process wide pool the algorithms run their worker tasks on, sized to the machine by 'scheduler.threads'. No
+ * threads are created per request, the tasks of every request share the pool and stop cooperatively once their
+ * {@link Cancellation} is cancelled.
+ * <p/>
+ * The tasks must never block waiting for other tasks, the waiting is left to the request threads calling the
+ * algorithms, so the pool cannot run out of threads while there is work queued.
+ */
+@Singleton
+public class Scheduler {
+
+	private static final Logger log = LoggerFactory.getLogger(Scheduler.class);
+
+	private final int threads;
+
+	private final ExecutorService executor;
+
+	/**
+	 * @param threads the number of threads, 0 for one per processor
+	 */
+	@Inject
+	public Scheduler(@Named("scheduler.threads") int threads) {
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		log.debug("Starting {} scheduler threads", this.threads);
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = task -> {
+			Thread thread = new Thread(task, "scheduler-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		this.executor = Executors.newFixedThreadPool(this.threads, factory);
+	}
+
+	/**
+	 * @return the number of threads, the most tasks of a computation that can run in parallel
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @param task the task to run
+	 */
+	public void execute(Runnable task) {
+		executor.execute(task);
+	}
+
+	/**
+	 * Runs the tasks and waits for all of them, see {@link ExecutorService#invokeAll(Collection)}
+	 *
+	 * @param tasks the tasks to run
+	 * @return the futures of the tasks, all done
+	 * @throws InterruptedException if interrupted while waiting, the tasks not done yet are then cancelled
+	 */
+	public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+		return executor.invokeAll(tasks);
+	}
+}
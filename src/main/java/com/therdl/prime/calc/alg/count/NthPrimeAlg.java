@@ -0,0 +1,100 @@
+package com.therdl.prime.calc.alg.count;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.therdl.prime.calc.alg.Primes;
+import com.therdl.prime.calc.alg.sieve.SieveAlg;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Finds the n-th prime without sieving everything below it. The answer is estimated with Cipolla's asymptotic
+ * expansion https://en.wikipedia.org/wiki/Prime_number_theorem#Approximations_for_the_nth_prime_number
+ * p(n) ~ n (ln n + ln ln n - 1 + (ln ln n - 2) / ln n - ..), the primes up to the estimate are counted with
+ * {@link PrimeCountAlg} and then short windows next to the estimate are sieved, forwards if the count falls short of
+ * n and backwards otherwise, until the window holding the n-th prime is reached.
+ * The estimate is within a fraction of a percent so only a few windows are sieved and the cost is dominated by the
+ * O(x^(3/4)) count.
+ */
+@Singleton
+public class NthPrimeAlg {
+
+	/**
+	 * The highest n accepted, its prime is below 2.5 * 10^11 so well inside {@link PrimeCountAlg#MAX_LIMIT}
+	 */
+	public static final long MAX_N = 10_000_000_000L;
+
+	//the width of the windows sieved next to the estimate
+	private static final long WINDOW = 1 << 20;
+
+	//the first primes, where the expansion is not accurate
+	private static final long[] SMALL_PRIMES = {0, 2, 3, 5, 7, 11, 13, 17, 19, 23, 29};
+
+	private static final Logger log = LoggerFactory.getLogger(NthPrimeAlg.class);
+
+	private final PrimeCountAlg primeCountAlg;
+	private final SieveAlg sieveAlg;
+
+	@Inject
+	public NthPrimeAlg(PrimeCountAlg primeCountAlg, SieveAlg sieveAlg) {
+		this.primeCountAlg = primeCountAlg;
+		this.sieveAlg = sieveAlg;
+	}
+
+	/**
+	 * The entry point to the algorithm
+	 *
+	 * @param n        the position of the prime, 1 for 2, at most {@link #MAX_N}
+	 * @param deadline the {@link System#nanoTime()} by which the processing has to finish
+	 * @return the n-th prime
+	 */
+	public long process(long n, long deadline) throws TimeoutException, InterruptedException {
+		log.debug("NthPrimeAlg process - BEGIN");
+
+		if (n < SMALL_PRIMES.length) {
+			return SMALL_PRIMES[(int) n];
+		}
+
+		long estimate = estimate(n);
+		//the number of primes up to and including the estimate
+		long count = primeCountAlg.process(0, estimate, deadline);
+		log.debug("Estimated the {}th prime as {} with {} primes up to it", n, estimate, count);
+
+		if (count < n) {
+			for (long from = estimate + 1; ; from += WINDOW) {
+				checkDeadline(deadline);
+				Primes window = sieveAlg.process(from, from + WINDOW - 1, deadline);
+				if (count + window.size() >= n) {
+					return window.get((int) (n - count - 1));
+				}
+				count += window.size();
+			}
+		}
+		for (long to = estimate; ; to -= WINDOW) {
+			checkDeadline(deadline);
+			Primes window = sieveAlg.process(Math.max(0, to - WINDOW + 1), to, deadline);
+			//the number of primes below the window
+			long below = count - window.size();
+			if (below < n) {
+				return window.get((int) (n - below - 1));
+			}
+			count = below;
+		}
+	}
+
+	//Cipolla's expansion to the third order, accurate for n above the small primes
+	static long estimate(long n) {
+		double ln = Math.log(n);
+		double lnln = Math.log(ln);
+		return (long) (n * (ln + lnln - 1 + (lnln - 2) / ln - (lnln * lnln - 6 * lnln + 11) / (2 * ln * ln)));
+	}
+
+	private static void checkDeadline(long deadline) throws TimeoutException {
+		if (System.nanoTime() > deadline) {
+			log.debug("Timed out ->");
+			throw new TimeoutException("Processing timed out");
+		}
+	}
+}
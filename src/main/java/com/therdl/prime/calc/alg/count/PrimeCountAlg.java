@@ -0,0 +1,202 @@
+package com.therdl.prime.calc.alg.count;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.therdl.prime.calc.alg.MemoryGovernor;
+import com.therdl.prime.calc.alg.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Counts the primes up to a limit without listing them, using Lucy_Hedgehog's algorithm
+ * https://projecteuler.net/thread=10;page=5#111677
+ * S(v) starts as the count of 2..v for every distinct value v = x / i, each prime p up to the square root of x then
+ * removes the numbers whose smallest prime factor is p: S(v) -= S(v / p) - S(p - 1) for every v >= p^2. This takes
+ * O(x^(3/4)) time and O(x^(1/2)) memory.
+ * <p/>
+ * The values are kept in two arrays, the small ones v <= sqrt(x) indexed by v and the large ones x / i indexed by i.
+ * The round of 2 is worked out up front. The rounds of the next primes touch most of the arrays so with more than
+ * one {@link Scheduler} thread they are split between the threads: every worker
+ * first works out the changes for its part reading only values from before the round, then the changes are applied.
+ * The arrays are reserved with the {@link MemoryGovernor}, with less memory free the count runs on the calling thread
+ * without the array of changes.
+ */
+@Singleton
+public class PrimeCountAlg {
+
+	/**
+	 * The highest limit accepted, counting up to it takes about 2 seconds on a single core and the arrays take
+	 * 16 * sqrt(limit) bytes
+	 */
+	public static final long MAX_LIMIT = 1_000_000_000_000L;
+
+	//rounds changing fewer values are done on the calling thread
+	private static final int PARALLEL_THRESHOLD = 64 * 1024;
+
+	private static final Logger log = LoggerFactory.getLogger(PrimeCountAlg.class);
+
+	private final Scheduler scheduler;
+
+	private final MemoryGovernor governor;
+
+	@Inject
+	public PrimeCountAlg(Scheduler scheduler, MemoryGovernor governor) {
+		this.scheduler = scheduler;
+		this.governor = governor;
+	}
+
+	/**
+	 * The entry point to the algorithm
+	 *
+	 * @param from     the lower limit (inclusive) of the range
+	 * @param to       the upper limit (inclusive) of the range, at most {@link #MAX_LIMIT}
+	 * @param deadline the {@link System#nanoTime()} by which the processing has to finish
+	 * @return the number of primes in the range
+	 */
+	public long process(long from, long to, long deadline) throws TimeoutException, InterruptedException {
+		log.debug("PrimeCountAlg process - BEGIN");
+
+		if (to < 2 || from > to) {
+			return 0;
+		}
+		long count = count(to, deadline);
+		if (from > 2) {
+			count -= count(from - 1, deadline);
+		}
+		return count;
+	}
+
+	private long count(long x, long deadline) throws TimeoutException, InterruptedException {
+		int root = (int) sqrt(x);
+		long arrayBytes = (long) (root + 1) * Long.BYTES;
+		int threads = scheduler.getThreads();
+		try (MemoryGovernor.Reservation reservation = governor.reserve(2 * arrayBytes,
+				(threads > 1 ? 3 : 2) * arrayBytes, deadline)) {
+			return count(x, root, reservation.getBytes() >= 3 * arrayBytes ? threads : 1, deadline);
+		}
+	}
+
+	private long count(long x, int root, int threads, long deadline) throws TimeoutException, InterruptedException {
+		//small[v] = S(v) and large[i] = S(x / i)
+		long[] small = new long[root + 1];
+		long[] large = new long[root + 1];
+		long[] changes = threads > 1 ? new long[root + 1] : null;
+		//the round of 2 is done up front, leaving 2 and the odd numbers from 3 to v
+		for (int v = 2; v <= root; v++) {
+			small[v] = (v + 1) / 2;
+		}
+		for (int i = 1; i <= root; i++) {
+			large[i] = (x / i + 1) / 2;
+		}
+
+		for (int p = 3; p <= root; p += 2) {
+			if (small[p] == small[p - 1]) {
+				//not a prime
+				continue;
+			}
+			if (System.nanoTime() > deadline) {
+				log.debug("Timed out ->");
+				throw new TimeoutException("Processing timed out");
+			}
+			long below = small[p - 1];
+			long square = (long) p * p;
+			int largeEnd = (int) Math.min(root, x / square);
+			int prime = p;
+
+			//the large values first as they read the small ones from before the round
+			if (changes == null || largeEnd < PARALLEL_THRESHOLD) {
+				//in increasing order of i the value at i * p is read before it changes
+				for (int i = 1; i <= largeEnd; i++) {
+					large[i] -= largeValue(x, root, small, large, (long) i * prime) - below;
+				}
+			} else {
+				inParallel(threads, 1, largeEnd + 1, (start, end) -> {
+					for (int i = start; i < end; i++) {
+						changes[i] = largeValue(x, root, small, large, (long) i * prime) - below;
+					}
+				});
+				inParallel(threads, 1, largeEnd + 1, (start, end) -> {
+					for (int i = start; i < end; i++) {
+						large[i] -= changes[i];
+					}
+				});
+			}
+
+			if (square > root) {
+				continue;
+			}
+			int smallStart = (int) square;
+			if (changes == null || root - smallStart < PARALLEL_THRESHOLD) {
+				//in decreasing order of v the value at v / p is read before it changes
+				for (int v = root; v >= smallStart; v--) {
+					small[v] -= small[v / prime] - below;
+				}
+			} else {
+				inParallel(threads, smallStart, root + 1, (start, end) -> {
+					for (int v = start; v < end; v++) {
+						changes[v] = small[v / prime] - below;
+					}
+				});
+				inParallel(threads, smallStart, root + 1, (start, end) -> {
+					for (int v = start; v < end; v++) {
+						small[v] -= changes[v];
+					}
+				});
+			}
+		}
+		return large[1];
+	}
+
+	//S(x / d) for d = i * p, x / d = (x / i) / p
+	private static long largeValue(long x, int root, long[] small, long[] large, long d) {
+		return d <= root ? large[(int) d] : small[(int) (x / d)];
+	}
+
+	/**
+	 * A part [start, end) of one round
+	 */
+	private interface Part {
+		void run(int start, int end);
+	}
+
+	//splits [start, end) evenly between the threads and waits for all the parts
+	private void inParallel(int threads, int start, int end, Part part)
+			throws InterruptedException {
+		List<Callable<Void>> tasks = new ArrayList<>(threads);
+		int size = (end - start + threads - 1) / threads;
+		for (int partStart = start; partStart < end; partStart += size) {
+			int partEnd = Math.min(end, partStart + size);
+			int first = partStart;
+			tasks.add(() -> {
+				part.run(first, partEnd);
+				return null;
+			});
+		}
+		for (Future<Void> future : scheduler.invokeAll(tasks)) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+
+	//the exact integer square root, the floating point one can be off by one for large values
+	private static long sqrt(long nr) {
+		long root = (long) Math.sqrt((double) nr);
+		while (root * root > nr) {
+			root--;
+		}
+		while ((root + 1) * (root + 1) <= nr) {
+			root++;
+		}
+		return root;
+	}
+}
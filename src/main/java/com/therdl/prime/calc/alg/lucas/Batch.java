@@ -0,0 +1,55 @@
+package com.therdl.prime.calc.alg.lucas;
+
+/**
+ * A batch of Lucas pseudo primes, the ones of a stride of the range, handed from a {@link Lucas} producer to the
+ * {@link Workers}. The sequence number lets the results be merged back in order whichever producer made the batch and
+ * whichever worker verifies it
+ */
+public class Batch {
+
+	private final int sequence;
+	private final long[] candidates;
+	private final int length;
+	private final long upTo;
+
+	/**
+	 * @param sequence   the position of the batch in the stream, starting at 0
+	 * @param candidates the Lucas pseudo primes, in order
+	 * @param length     the number of candidates in use
+	 * @param upTo       the end (inclusive) of the stride the candidates were found in
+	 */
+	public Batch(int sequence, long[] candidates, int length, long upTo) {
+		this.sequence = sequence;
+		this.candidates = candidates;
+		this.length = length;
+		this.upTo = upTo;
+	}
+
+	/**
+	 * @return the position of the batch in the stream, starting at 0
+	 */
+	public int getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return the Lucas pseudo primes, in order, only the first {@link #getLength()} are in use
+	 */
+	public long[] getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * @return the number of candidates in use
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the end (inclusive) of the stride, every prime up to it is in this batch or an earlier one
+	 */
+	public long getUpTo() {
+		return upTo;
+	}
+}
@@ -1,90 +1,119 @@
 package com.therdl.prime.calc.alg.lucas;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.therdl.prime.calc.alg.Montgomery;
+import com.therdl.prime.calc.alg.Cancellation;
 
-import java.math.BigInteger;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Arrays;
 
 /**
- * Wraps around the Lucas numbers calculator thread and provides convenience methods
+ * The producer side of the Lucas filter. It tests each odd number of the range with the Lucas probable prime test:
+ * every prime n divides L(n) - 1 where L is the Lucas numbers series 2, 1, 3, 4, 7.. Only L(n) mod n is needed so it
+ * is calculated with the fast doubling formulas in 64 bit modular arithmetic, O(log n) steps per candidate instead of
+ * carrying the whole series forward. Every candidate is tested on its own so the range is split into strides, each
+ * expected to hold about 'batchSize' primes, which the producers of the {@link Workers} test in parallel. The Lucas
+ * pseudo primes of a stride make up a primitive batch, tagged with the position of the stride, to be checked to
+ * achieve certainty.
  * Created by Alex on 24/04/2016.
  */
 public class Lucas {
 
-	public static final int POISON = -1;
+	//the cancellation is checked every 16K odd candidates
+	private static final long CHECK_MASK = 32 * 1024 - 1;
 
-	private static final Logger log = LoggerFactory.getLogger(Lucas.class);
-
-	private ExecutorService executor = Executors.newSingleThreadExecutor();
-
-	private BigInteger x1 = new BigInteger("1");
-	private BigInteger x2 = new BigInteger("3");
-
-	private int index = 3;
-	private final int limit;
-	private ArrayBlockingQueue<Integer> queue = new ArrayBlockingQueue<>(1);
+	private final long from;
+	private final long to;
+	private final long stride;
+	private final int batches;
 
 	/**
-	 * Creates a new Lucas thread with the given limit
-	 * @param limit the upper limit (inclusive) to where the thread checks for pseudo primes
+	 * @param from      the lower limit (inclusive) of the range
+	 * @param to        the upper limit (inclusive) of the range
+	 * @param batchSize the number of pseudo primes expected in a batch
 	 */
-	public Lucas(int limit) {
-		this.limit = limit;
+	public Lucas(long from, long to, int batchSize) {
+		this.from = from;
+		this.to = to;
+		//there are about 1 / ln(x) primes around x, the strides are even so every one starts on the same parity
+		long width = (long) (batchSize * Math.log(Math.max(to, 16)));
+		this.stride = Math.max(2, width + (width & 1));
+		this.batches = (int) ((to - from) / stride + 1);
 	}
 
 	/**
-	 * Start the Lucas numbers thread. This thread calculates the Lucas numbers series and tests each integer up
-	 * to the limit to be a lucas pseudo prime. Each pseudo prime is placed on a blocking queue to be picked up by
-	 * the workers and checked to achieve certainty.
-	 *
-	 * @throws InterruptedException
+	 * @return the number of batches the range is split into
 	 */
-	public void start() throws InterruptedException {
-		executor.submit(() -> {
-			BigInteger nextLucasNr = new BigInteger("0");
-			//calculate lucas numbers
-			while (index <= limit) {
-				nextLucasNr = x1.add(x2);
-				//check if Lucas pseudo prime
-				if (nextLucasNr.subtract(BigInteger.ONE).mod(BigInteger.valueOf(index)).equals(BigInteger.ZERO)) {
-					try {
-						log.debug("Placing Lucas pseudo prime: {}", index);
-						queue.put(index);
-					} catch (InterruptedException e) {
-						log.error(e.getMessage(), e);
-						Thread.currentThread().interrupt();
-					}
-				}
-				x1 = x2;
-				x2 = nextLucasNr;
-				index++;
-			}
-			log.debug("Lucas is done at limit: {} with lucas nr: {}", limit, nextLucasNr.toString());
-			//once done, the thread injects a poison value into the queue to notify the workers on the other side
-			injectPoison();
-		});
+	public int getBatches() {
+		return batches;
 	}
 
 	/**
-	 * @return the queue where Lucas pseudo primes are placed by the thread
+	 * Tests every odd number in a stride of the range (and 2) for the Lucas pseudo primes. This runs on a
+	 * {@link com.therdl.prime.calc.alg.Scheduler} thread and stops early once cancelled
+	 *
+	 * @param sequence     the position of the stride in the range, starting at 0
+	 * @param cancellation the token cancelling the computation
+	 * @return the batch of Lucas pseudo primes of the stride, null if cancelled
 	 */
-	public ArrayBlockingQueue<Integer> getQueue() {
-		return queue;
+	public Batch produce(int sequence, Cancellation cancellation) {
+		long low = from + sequence * stride;
+		long high = Math.min(to, low + stride - 1);
+		long[] candidates = new long[16];
+		int length = 0;
+		if (low <= 2 && 2 <= high) {
+			candidates[length++] = 2;
+		}
+		for (long candidate = Math.max(3, low | 1); candidate <= high; candidate += 2) {
+			if ((candidate & CHECK_MASK) == 1 && cancellation.isCancelled()) {
+				return null;
+			}
+			if (isProbablePrime(candidate)) {
+				if (length == candidates.length) {
+					candidates = Arrays.copyOf(candidates, length * 2);
+				}
+				candidates[length++] = candidate;
+			}
+		}
+		return new Batch(sequence, candidates, length, high);
 	}
 
 	/**
-	 * @return The limit up to which the lucas thread looks for pseudo primes
+	 * Tests if the given odd number is a Lucas probable prime. Every prime passes, the few composites that pass too
+	 * (Lucas pseudo primes such as 705) need to be ruled out separately
+	 *
+	 * @param n the odd number to test, at least 3
+	 * @return true if n divides L(n) - 1
 	 */
-	public int getLimit() {
-		return limit;
-	}
-
-	private void injectPoison() {
-		queue.add(POISON);
+	public static boolean isProbablePrime(long n) {
+		Montgomery mod = new Montgomery(n);
+		long two = mod.toMontgomery(2);
+		//walk the bits of n from the top keeping L(k) and L(k + 1), starting with k = 0
+		long lk = two;
+		long lk1 = mod.one();
+		boolean kOdd = false;
+		for (int bit = 63 - Long.numberOfLeadingZeros(n); bit >= 0; bit--) {
+			//with P = 1 and Q = -1: L(2k) = L(k)^2 - 2(-1)^k, L(2k + 1) = L(k)L(k + 1) - (-1)^k
+			long l2k = mod.multiply(lk, lk);
+			long l2k1 = mod.multiply(lk, lk1);
+			long l2k2 = mod.multiply(lk1, lk1);
+			if (kOdd) {
+				l2k = mod.add(l2k, two);
+				l2k1 = mod.add(l2k1, mod.one());
+				l2k2 = mod.subtract(l2k2, two);
+			} else {
+				l2k = mod.subtract(l2k, two);
+				l2k1 = mod.subtract(l2k1, mod.one());
+				l2k2 = mod.add(l2k2, two);
+			}
+			if (((n >>> bit) & 1) == 0) {
+				lk = l2k;
+				lk1 = l2k1;
+				kOdd = false;
+			} else {
+				lk = l2k1;
+				lk1 = l2k2;
+				kOdd = true;
+			}
+		}
+		return lk == mod.one();
 	}
-
-
 }
@@ -1,18 +1,30 @@
 package com.therdl.prime.calc.alg.lucas;
 
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
-import com.therdl.prime.calc.alg.ConcurrentUtil;
+import com.google.inject.name.Named;
+import com.therdl.prime.calc.alg.Flight;
+import com.therdl.prime.calc.alg.Flights;
+import com.therdl.prime.calc.alg.MemoryGovernor;
+import com.therdl.prime.calc.alg.Primes;
+import com.therdl.prime.calc.alg.Scheduler;
+import com.therdl.prime.calc.alg.sieve.SieveAlg;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.SortedSet;
-import java.util.TreeSet;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 /**
  * Contains the lucas numbers filter primality algorithm.
  * For more information please see: https://www.youtube.com/watch?v=lEvXcTYqtKU
+ * Every candidate in the range is tested on its own with L(n) mod n so only the requested range is worked on, split
+ * into strides tested in parallel by the {@link Lucas} producers of the {@link Workers}. Their Lucas pseudo primes
+ * flow in batches to verifiers on the {@link Scheduler}, which check them by trial division with the base primes up
+ * to the square root of the upper limit, which come from the sieve.
+ * Concurrent requests for the same range, or a part of a range being filtered, share one run through {@link Flights}.
+ * The base primes, the primes found and the batches waiting are reserved with the {@link MemoryGovernor} while the
+ * range is filtered, with less memory free fewer batches wait for the verifiers. The caller accounts for the primes it
+ * holds on to after that.
  * Created by Alex on 23/04/2016.
  */
 @Singleton
@@ -20,47 +32,83 @@ public class LucasAlg {
 
 	private static final Logger log = LoggerFactory.getLogger(LucasAlg.class);
 
+	private final SieveAlg sieveAlg;
+	private final Scheduler scheduler;
+	private final MemoryGovernor governor;
+
+	//concurrent requests covered by a running one subscribe to it
+	private final Flights flights = new Flights();
+
+	private final int batchSize;
+	private final int queueDepth;
+
+	/**
+	 * @param sieveAlg   the sieve providing the base primes
+	 * @param scheduler  the pool the producers and the verifiers run on
+	 * @param governor   the memory the base primes, the primes found and the batches waiting are reserved with
+	 * @param batchSize  the number of Lucas pseudo primes expected in the batch of a stride
+	 * @param queueDepth the number of batches that can wait for the verifiers
+	 */
+	@Inject
+	public LucasAlg(SieveAlg sieveAlg, Scheduler scheduler, MemoryGovernor governor,
+					@Named("lucas.batchSize") int batchSize, @Named("lucas.queueDepth") int queueDepth) {
+		this.sieveAlg = sieveAlg;
+		this.scheduler = scheduler;
+		this.governor = governor;
+		this.batchSize = batchSize;
+		this.queueDepth = queueDepth;
+	}
+
 	/**
 	 * The entry point to the algorithm
 	 *
-	 * @param limit the upper limit to the prime numbers search
+	 * @param from     the lower limit (inclusive) of the prime numbers search
+	 * @param to       the upper limit (inclusive) of the prime numbers search
+	 * @param deadline the {@link System#nanoTime()} by which the processing has to finish
 	 * @return the list of prime numbers found
 	 */
-	public SortedSet<Integer> process(int limit) throws TimeoutException, InterruptedException {
+	public Primes process(long from, long to, long deadline) throws TimeoutException, InterruptedException {
 		log.debug("LucasAlg process - BEGIN");
-		//we hard code the first few primes
-		SortedSet<Integer> primes = new TreeSet<>();
-		if (limit < 2) {
-			return primes;
-		} else if (limit == 2) {
-			primes.add(2);
-			return primes;
-		} else if (limit == 3 || limit == 4) {
-			primes.add(2);
-			primes.add(3);
-			return primes;
+
+		if (to < 2 || from > to) {
+			return new Primes();
 		}
 
-		Lucas lucas = new Lucas(limit);
-		Workers workers = new Workers(lucas);
+		return flights.run(from, to, deadline, flight -> filter(from, to, deadline, flight));
+	}
 
+	private void filter(long from, long to, long deadline, Flight flight)
+			throws TimeoutException, InterruptedException {
+		int[] basePrimes = sieveAlg.basePrimes(to, deadline);
+		//the base primes are held by the verifiers until the range is filtered
+		long heldBytes = Primes.estimateBytes(from, to) + (long) basePrimes.length * Integer.BYTES;
+		long batchBytes = (long) batchSize * Long.BYTES;
+		try (MemoryGovernor.Reservation reservation = governor.reserve(heldBytes + batchBytes,
+				heldBytes + queueDepth * batchBytes, deadline)) {
+			int depth = (int) ((reservation.getBytes() - heldBytes) / batchBytes);
+			filter(from, to, deadline, new Workers(basePrimes, flight, scheduler, depth));
+		}
+	}
+
+	private void filter(long from, long to, long deadline, Workers workers)
+			throws TimeoutException, InterruptedException {
 		try {
 			workers.getLock().lock();
-			log.debug("Starting workers, waiting for DONE signal");
-			lucas.start();
-			workers.start();
-			if (!workers.getDone().await(5, TimeUnit.SECONDS)) {
-				log.debug("Timed out after 5 seconds ->");
-				throw new TimeoutException("Processing timed out after 5 seconds");
+			log.debug("Starting producers, waiting for DONE signal");
+			workers.start(new Lucas(from, to, batchSize));
+			long nanosLeft = deadline - System.nanoTime();
+			while (!workers.isDone()) {
+				if (nanosLeft <= 0) {
+					log.debug("Timed out ->");
+					throw new TimeoutException("Processing timed out");
+				}
+				nanosLeft = workers.getDone().awaitNanos(nanosLeft);
 			}
-			log.debug("SieveAlg picked up DONE signal");
-
-			log.debug("Stopping the workers");
-			ConcurrentUtil.stop(workers.getExecutor());
+			log.debug("LucasAlg picked up DONE signal");
 		} finally {
 			workers.getLock().unlock();
+			log.debug("Cancelling the workers");
+			workers.getCancellation().cancel();
 		}
-
-		return workers.getPrimes();
 	}
 }
@@ -1,98 +1,97 @@
 package com.therdl.prime.calc.alg.lucas;
 
-import com.therdl.prime.calc.alg.ConcurrentUtil;
+import com.therdl.prime.calc.alg.Cancellation;
+import com.therdl.prime.calc.alg.Flight;
+import com.therdl.prime.calc.alg.Primes;
+import com.therdl.prime.calc.alg.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
-import java.util.SortedSet;
-import java.util.TreeSet;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Wraps around the worker threads which test Lucas pseudoprimes using trial by division with previous known primes.
- * The worker threads pick up Lucas pseudo primes as they become available in order and then start the trial by
- * division on each one based on the previously discovered primes.
+ * Wraps around the pipeline producers and verifiers and provides convenience methods. There is a producer per
+ * {@link Scheduler} thread, each one picks up the strides of the range in order, one at a time, and runs the
+ * {@link Lucas} test over them, handing every batch of Lucas pseudo primes over to a verifier on the {@link Scheduler}, which tests them using
+ * trial division with the base primes to achieve certainty. At most 'queueDepth' batches wait for the verifiers, as
+ * the scheduler tasks must not block, a producer finding the queue full verifies its batch itself. The verified
+ * batches are then merged back in order of their sequence numbers and appended to the {@link Flight}, so the requests
+ * subscribed to it can be answered as soon as their part of the range is final.
+ * The end of the stream is reached when every batch has been merged, the workers then signal DONE. Once cancelled
+ * the producers stop and the batches still waiting are skipped.
  * Created by Alex on 24/04/2016.
  */
 public class Workers {
 
 	private static final Logger log = LoggerFactory.getLogger(Workers.class);
 
-	private Lucas lucas;
+	private final int[] basePrimes;
+	private final Flight flight;
+	private final Scheduler scheduler;
+	private final Cancellation cancellation = new Cancellation();
 
-	private SortedSet<Integer> primes = Collections.synchronizedSortedSet(new TreeSet<>());
-
-	private ExecutorService executor = Executors.newSingleThreadExecutor();
+	//a permit for each batch that can wait for the verifiers
+	private final Semaphore waiting;
 
 	final Lock lock = new ReentrantLock();
 	final Condition done = lock.newCondition();
 
-	private int maxPrime = 2;
+	//the next stride to be picked up by a producer
+	private final AtomicInteger nextBatch = new AtomicInteger(0);
 
-	public Workers(Lucas lucas) {
-		this.lucas = lucas;
-		primes.add(2);
-	}
+	//the merge state, guarded by the lock
+	private final Map<Integer, Primes> verified = new HashMap<>();
+	private final Map<Integer, Long> verifiedUpTo = new HashMap<>();
+	private int nextSequence = 0;
+	private int batchCount = -1;
+	private volatile boolean finished;
 
 	/**
-	 * Starts the workers. They begin listening for lucas pseudo primes on the blocking queue. Once the {@link Lucas}
-	 * thread injects {@link Lucas#POISON} into the {@link Lucas#getQueue()} the workers finish and signal DONE via
-	 * the {@link #getDone()} and {@link #getLock()} condition lock pair.
+	 * @param basePrimes all the primes up to at least the square root of the upper limit
+	 * @param flight     the flight the verified primes are appended to as they are merged
+	 * @param scheduler  the pool the verifiers run on
+	 * @param queueDepth the number of batches that can wait for the verifiers
 	 */
-	public void start() {
-		executor.submit(() -> {
-			int primeCandidate = 2;
-			while (primeCandidate <= (lucas.getLimit())) {
-				log.debug("Starting prime candidate worker thread: {}", primeCandidate);
-				int sqrt = (int) (Math.sqrt(primeCandidate));
-
-				boolean isPrime = true;
-				for (int p : primes) {
-					//we stop if we get above the square root = found a prime
-					if (p >= sqrt) {
-						log.debug("prime {} went above the sqrt of {} which is {}", p, primeCandidate, sqrt);
-						break;
-					}
-					if (primeCandidate % p == 0) {
-						log.debug("**** Prime candidate {} actually divides by: {}", primeCandidate, p);
-						isPrime = false;
-						break;
-					}
-				}
-				if (isPrime) {
-					addPrime(primeCandidate);
-				}
-
-				try {
-					primeCandidate = lucas.getQueue().take();
-					if (primeCandidate == Lucas.POISON) {
-						log.debug("Queue has been poisoned, exiting");
-						break;
-					}
-				} catch (InterruptedException e) {
-					log.error(e.getMessage(), e);
-					Thread.currentThread().interrupt();
-					break;
-				}
-			}
-
-			log.debug("Workers signalling DONE");
-			ConcurrentUtil.signalDone(lock, done);
-		});
+	public Workers(int[] basePrimes, Flight flight, Scheduler scheduler, int queueDepth) {
+		this.basePrimes = basePrimes;
+		this.flight = flight;
+		this.scheduler = scheduler;
+		this.waiting = new Semaphore(queueDepth);
 	}
 
 	/**
-	 * @return The primes discovered by the workers
+	 * Starts the producers, one per scheduler thread unless there are fewer batches. Once every batch has been
+	 * verified and merged the workers signal DONE via the {@link #getDone()} and {@link #getLock()} condition lock
+	 * pair.
+	 *
+	 * @param lucas the producer side of the range
 	 */
-	public SortedSet<Integer> getPrimes() {
-		return primes;
+	public void start(Lucas lucas) {
+		try {
+			lock.lock();
+			batchCount = lucas.getBatches();
+		} finally {
+			lock.unlock();
+		}
+		int producers = Math.min(scheduler.getThreads(), lucas.getBatches());
+		log.debug("Starting {} producers for {} batches", producers, lucas.getBatches());
+		for (int i = 0; i < producers; i++) {
+			scheduler.execute(() -> produce(lucas));
+		}
 	}
 
+	/**
+	 * @return true once every batch has been verified and merged
+	 */
+	public boolean isDone() {
+		return finished;
+	}
 
 	/**
 	 * @return the lock used in conjunction with {@link #getDone()} to signal the end of processing
@@ -109,16 +108,89 @@ public class Workers {
 	}
 
 	/**
-	 * @return the worker thread executor
+	 * @return the token cancelling the workers, the batches still waiting are then skipped
 	 */
-	public ExecutorService getExecutor() {
-		return executor;
+	public Cancellation getCancellation() {
+		return cancellation;
 	}
 
-	private void addPrime(int prime) {
-		if (maxPrime < prime) {
-			maxPrime = prime;
+	//tests a stride and queues up again behind its verifier, so the batches are verified while the range is produced
+	private void produce(Lucas lucas) {
+		int sequence = nextBatch.getAndIncrement();
+		if (sequence >= lucas.getBatches()) {
+			return;
+		}
+		Batch batch = cancellation.isCancelled() ? null : lucas.produce(sequence, cancellation);
+		if (batch == null) {
+			log.debug("Producer cancelled, exiting");
+			return;
+		}
+		if (waiting.tryAcquire()) {
+			scheduler.execute(() -> {
+				try {
+					verify(batch);
+				} finally {
+					waiting.release();
+				}
+			});
+		} else {
+			verify(batch);
+		}
+		scheduler.execute(() -> produce(lucas));
+	}
+
+	private void verify(Batch batch) {
+		if (cancellation.isCancelled()) {
+			log.debug("Verifier cancelled, skipping batch {}", batch.getSequence());
+			return;
+		}
+		Primes batchPrimes = new Primes();
+		for (int i = 0; i < batch.getLength(); i++) {
+			long candidate = batch.getCandidates()[i];
+			if (isPrime(candidate)) {
+				batchPrimes.add(candidate);
+			}
+		}
+		merge(batch.getSequence(), batchPrimes, batch.getUpTo());
+	}
+
+	//appends the batches that are next in line, the ones verified out of order wait for their turn
+	private void merge(int sequence, Primes batchPrimes, long upTo) {
+		try {
+			lock.lock();
+			verified.put(sequence, batchPrimes);
+			verifiedUpTo.put(sequence, upTo);
+			Primes next;
+			while ((next = verified.remove(nextSequence)) != null) {
+				flight.append(next, verifiedUpTo.remove(nextSequence));
+				nextSequence++;
+			}
+			checkFinished();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	//called with the lock held
+	private void checkFinished() {
+		if (nextSequence == batchCount && !finished) {
+			log.debug("Workers signalling DONE");
+			finished = true;
+			done.signal();
+		}
+	}
+
+	//trial division by the base primes up to the square root of the candidate
+	private boolean isPrime(long candidate) {
+		for (int p : basePrimes) {
+			if ((long) p * p > candidate) {
+				break;
+			}
+			if (candidate % p == 0) {
+				log.debug("**** Lucas pseudo prime {} actually divides by: {}", candidate, p);
+				return false;
+			}
 		}
-		primes.add(prime);
+		return true;
 	}
 }
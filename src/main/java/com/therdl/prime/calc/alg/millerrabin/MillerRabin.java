@@ -0,0 +1,67 @@
+package com.therdl.prime.calc.alg.millerrabin;
+
+import com.therdl.prime.calc.alg.Montgomery;
+
+/**
+ * The deterministic Miller-Rabin primality test for 64 bit numbers
+ * https://en.wikipedia.org/wiki/Miller%E2%80%93Rabin_primality_test
+ * Testing against the seven bases found by Jim Sinclair is proven to be exact for every n below 2^64. The numbers
+ * are first divided by the small primes, which rules out most composites cheaply, and the modular exponentiation
+ * uses Montgomery multiplication.
+ */
+public class MillerRabin {
+
+	private static final long[] BASES = {2, 325, 9375, 28178, 450775, 9780504, 1795265022};
+
+	private static final int[] SMALL_PRIMES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53, 59, 61, 67,
+			71, 73, 79, 83, 89, 97};
+
+	private MillerRabin() {
+	}
+
+	/**
+	 * @param n the number to test, below 2^63
+	 * @return true if n is prime
+	 */
+	public static boolean isPrime(long n) {
+		if (n < 2) {
+			return false;
+		}
+		for (int p : SMALL_PRIMES) {
+			if (n % p == 0) {
+				return n == p;
+			}
+		}
+		//every composite below 101^2 has a small prime factor
+		if (n < 101 * 101) {
+			return true;
+		}
+
+		//n - 1 = d * 2^s with d odd
+		long d = n - 1;
+		int s = Long.numberOfTrailingZeros(d);
+		d >>>= s;
+
+		Montgomery mod = new Montgomery(n);
+		long minusOne = mod.subtract(0, mod.one());
+		for (long base : BASES) {
+			long a = base % n;
+			if (a == 0) {
+				continue;
+			}
+			long x = mod.pow(mod.toMontgomery(a), d);
+			if (x == mod.one() || x == minusOne) {
+				continue;
+			}
+			boolean witness = true;
+			for (int i = 1; i < s && witness; i++) {
+				x = mod.multiply(x, x);
+				witness = x != minusOne;
+			}
+			if (witness) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,68 @@
+package com.therdl.prime.calc.alg.millerrabin;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.therdl.prime.calc.alg.Flight;
+import com.therdl.prime.calc.alg.Flights;
+import com.therdl.prime.calc.alg.MemoryGovernor;
+import com.therdl.prime.calc.alg.Primes;
+import com.therdl.prime.calc.alg.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Contains the deterministic Miller-Rabin algorithm for finding the primes in a range. Every candidate is tested on
+ * its own in O(log n) so there are no base primes to calculate first, which makes it the method of choice for narrow
+ * windows high up where sieving up to the square root would cost more than the window itself.
+ * Concurrent requests for the same range, or a part of a range being tested, share one run through {@link Flights}.
+ * The primes found are reserved with the {@link MemoryGovernor} before the workers start, the caller accounts for the
+ * primes it holds on to once they are all tested.
+ */
+@Singleton
+public class MillerRabinAlg {
+
+	private static final Logger log = LoggerFactory.getLogger(MillerRabinAlg.class);
+
+	private final Scheduler scheduler;
+
+	private final MemoryGovernor governor;
+
+	//concurrent requests covered by a running one subscribe to it
+	private final Flights flights = new Flights();
+
+	@Inject
+	public MillerRabinAlg(Scheduler scheduler, MemoryGovernor governor) {
+		this.scheduler = scheduler;
+		this.governor = governor;
+	}
+
+	/**
+	 * The entry point to the algorithm
+	 *
+	 * @param from     the lower limit (inclusive) of the prime numbers search
+	 * @param to       the upper limit (inclusive) of the prime numbers search
+	 * @param deadline the {@link System#nanoTime()} by which the processing has to finish
+	 * @return the list of prime numbers found
+	 */
+	public Primes process(long from, long to, long deadline) throws TimeoutException, InterruptedException {
+		log.debug("MillerRabinAlg process - BEGIN");
+
+		if (to < 2 || from > to) {
+			return new Primes();
+		}
+
+		return flights.run(from, to, deadline, flight -> test(from, to, deadline, flight));
+	}
+
+	private void test(long from, long to, long deadline, Flight flight) throws TimeoutException, InterruptedException {
+		long resultBytes = Primes.estimateBytes(from, to);
+		MemoryGovernor.Reservation reservation = governor.reserve(resultBytes, resultBytes, deadline);
+		try {
+			new Workers(from, to, flight, scheduler).run(scheduler.getThreads(), deadline);
+		} finally {
+			reservation.close();
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package com.therdl.prime.calc.alg.millerrabin;
+
+import com.therdl.prime.calc.alg.Flight;
+import com.therdl.prime.calc.alg.OrderedWorkers;
+import com.therdl.prime.calc.alg.Primes;
+import com.therdl.prime.calc.alg.Scheduler;
+
+/**
+ * Wraps around the worker threads testing the candidates in a range.
+ * The range is split in blocks handed out in order to one worker per {@link Scheduler} thread, every candidate in a
+ * block goes through the {@link MillerRabin} test. As each prefix of the range is complete it is appended to the
+ * {@link Flight}.
+ */
+public class Workers extends OrderedWorkers {
+
+	/**
+	 * The number of integers in a block handed out to a worker
+	 */
+	public static final int BLOCK_SIZE = 16 * 1024;
+
+	/**
+	 * @param from      the lower limit (inclusive) of the range
+	 * @param to        the upper limit (inclusive) of the range
+	 * @param flight    the flight the blocks are appended to in order
+	 * @param scheduler the pool the workers run on
+	 */
+	public Workers(long from, long to, Flight flight, Scheduler scheduler) {
+		super(from, to, BLOCK_SIZE, flight, scheduler);
+	}
+
+	@Override
+	protected Worker newWorker() {
+		return (low, high) -> {
+			Primes primes = new Primes();
+			if (low <= 2 && 2 <= high) {
+				primes.add(2);
+			}
+			for (long candidate = Math.max(3, low | 1); candidate <= high; candidate += 2) {
+				if (MillerRabin.isPrime(candidate)) {
+					primes.add(candidate);
+				}
+			}
+			return primes;
+		};
+	}
+}
@@ -0,0 +1,111 @@
+package com.therdl.prime.calc.alg.primality;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.therdl.prime.calc.alg.Scheduler;
+import com.therdl.prime.calc.alg.millerrabin.MillerRabin;
+import com.therdl.prime.calc.alg.sieve.Sieve;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Checks a list of numbers for primality. Numbers up to a configured limit are looked up in an odd-only bitset of
+ * the primes sieved once at startup, larger ones go through the deterministic {@link MillerRabin} test. The list is
+ * split between the processors.
+ */
+@Singleton
+public class PrimalityAlg {
+
+	private static final Logger log = LoggerFactory.getLogger(PrimalityAlg.class);
+
+	private final long bitsetLimit;
+
+	//bit i stands for the odd number 2 * i + 1 and a set bit means prime
+	private final long[] bitset;
+
+	private final Scheduler scheduler;
+
+	/**
+	 * @param scheduler   the pool the workers run on
+	 * @param bitsetLimit the highest number answered from the bitset, which takes bitsetLimit / 16 bytes
+	 */
+	@Inject
+	public PrimalityAlg(Scheduler scheduler, @Named("primality.bitsetLimit") long bitsetLimit) {
+		this.scheduler = scheduler;
+		this.bitsetLimit = bitsetLimit;
+		this.bitset = sieve(bitsetLimit);
+	}
+
+	/**
+	 * The entry point to the algorithm
+	 *
+	 * @param numbers  the numbers to check
+	 * @param deadline the {@link System#nanoTime()} by which the processing has to finish
+	 * @return true for each number that is prime, in step with the numbers
+	 */
+	public boolean[] process(long[] numbers, long deadline) throws TimeoutException, InterruptedException {
+		log.debug("PrimalityAlg process - BEGIN");
+
+		if (numbers.length == 0) {
+			return new boolean[0];
+		}
+
+		Workers workers = new Workers(numbers, this::isPrime, scheduler);
+		try {
+			workers.getLock().lock();
+			log.debug("Starting workers, waiting for DONE signal");
+			workers.start();
+			long nanosLeft = deadline - System.nanoTime();
+			while (!workers.isDone()) {
+				if (nanosLeft <= 0) {
+					log.debug("Timed out ->");
+					throw new TimeoutException("Processing timed out");
+				}
+				nanosLeft = workers.getDone().awaitNanos(nanosLeft);
+			}
+			log.debug("PrimalityAlg picked up DONE signal");
+		} finally {
+			workers.getLock().unlock();
+			log.debug("Cancelling the workers");
+			workers.getCancellation().cancel();
+		}
+		return workers.getIsPrime();
+	}
+
+	/**
+	 * @param n the number to check
+	 * @return true if n is prime
+	 */
+	public boolean isPrime(long n) {
+		if (n <= bitsetLimit) {
+			if ((n & 1) == 0) {
+				return n == 2;
+			}
+			int bit = (int) (n >>> 1);
+			return (bitset[bit >>> 6] & (1L << bit)) != 0;
+		}
+		return MillerRabin.isPrime(n);
+	}
+
+	//sieves the odd primes up to the limit one segment at a time into the bitset
+	private static long[] sieve(long limit) {
+		long[] bits = new long[(int) (limit / 128 + 1)];
+		int[] basePrimes = Sieve.smallPrimes((int) Math.sqrt((double) limit) + 1);
+		Sieve sieve = new Sieve();
+		for (long low = 0; low <= limit; low += Sieve.SEGMENT_SIZE) {
+			sieve.reset(low, Math.min(limit, low + Sieve.SEGMENT_SIZE - 1));
+			sieve.crossOff(basePrimes);
+			sieve.getPrimes().forEachLong(p -> {
+				if ((p & 1) == 1) {
+					int bit = (int) (p >>> 1);
+					bits[bit >>> 6] |= 1L << bit;
+				}
+			});
+		}
+		log.debug("Primality bitset sieved up to {}", limit);
+		return bits;
+	}
+}
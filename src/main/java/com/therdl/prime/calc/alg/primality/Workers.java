@@ -0,0 +1,123 @@
+package com.therdl.prime.calc.alg.primality;
+
+import com.therdl.prime.calc.alg.Cancellation;
+import com.therdl.prime.calc.alg.ConcurrentUtil;
+import com.therdl.prime.calc.alg.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongPredicate;
+
+/**
+ * Wraps around the worker threads checking a list of numbers and provides convenience methods.
+ * The list is split in blocks handed out to one worker per {@link Scheduler} thread, each worker writes the answers
+ * for its block straight into the shared result array.
+ */
+public class Workers {
+
+	/**
+	 * The number of numbers in a block handed out to a worker
+	 */
+	public static final int BLOCK_SIZE = 1024;
+
+	private static final Logger log = LoggerFactory.getLogger(Workers.class);
+
+	private final long[] numbers;
+	private final LongPredicate test;
+	private final boolean[] isPrime;
+	private final int blocks;
+
+	//the next block to be picked up by a worker
+	private AtomicInteger nextBlock = new AtomicInteger(0);
+	private AtomicInteger blocksLeft;
+
+	private final Scheduler scheduler;
+	private final Cancellation cancellation = new Cancellation();
+
+	final Lock lock = new ReentrantLock();
+	final Condition done = lock.newCondition();
+
+	/**
+	 * @param numbers   the numbers to check
+	 * @param test      the primality test applied to each number
+	 * @param scheduler the pool the workers run on
+	 */
+	public Workers(long[] numbers, LongPredicate test, Scheduler scheduler) {
+		this.numbers = numbers;
+		this.test = test;
+		this.scheduler = scheduler;
+		this.isPrime = new boolean[numbers.length];
+		this.blocks = (numbers.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		this.blocksLeft = new AtomicInteger(blocks);
+	}
+
+	/**
+	 * Starts the workers, one per scheduler thread. Once every block has been checked the workers signal DONE via the
+	 * {@link #getDone()} and {@link #getLock()} condition lock pair.
+	 */
+	public void start() {
+		int threads = Math.min(scheduler.getThreads(), blocks);
+		log.debug("Starting {} workers for {} blocks", threads, blocks);
+		for (int i = 0; i < threads; i++) {
+			scheduler.execute(this::work);
+		}
+	}
+
+	/**
+	 * @return true once every block has been checked
+	 */
+	public boolean isDone() {
+		return blocksLeft.get() == 0;
+	}
+
+	/**
+	 * @return the answers, in step with the numbers
+	 */
+	public boolean[] getIsPrime() {
+		return isPrime;
+	}
+
+	/**
+	 * @return the lock used in conjunction with {@link #getDone()} to signal the end of processing
+	 */
+	public Lock getLock() {
+		return lock;
+	}
+
+	/**
+	 * @return the condition used in conjunction with {@link #getLock()} to signal the end of processing
+	 */
+	public Condition getDone() {
+		return done;
+	}
+
+	/**
+	 * @return the token cancelling the workers, they stop at the next block
+	 */
+	public Cancellation getCancellation() {
+		return cancellation;
+	}
+
+	private void work() {
+		int block;
+		while ((block = nextBlock.getAndIncrement()) < blocks) {
+			if (cancellation.isCancelled()) {
+				log.debug("Worker cancelled, exiting");
+				return;
+			}
+			int end = Math.min(numbers.length, (block + 1) * BLOCK_SIZE);
+			for (int i = block * BLOCK_SIZE; i < end; i++) {
+				isPrime[i] = test.test(numbers[i]);
+			}
+			//the signal below publishes the answers to the waiting thread through the lock
+			if (blocksLeft.decrementAndGet() == 0) {
+				log.debug("Workers signalling DONE");
+				ConcurrentUtil.signalDone(lock, done);
+			}
+		}
+	}
+}
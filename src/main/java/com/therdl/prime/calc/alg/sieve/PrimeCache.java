@@ -0,0 +1,193 @@
+package com.therdl.prime.calc.alg.sieve;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.therdl.prime.calc.alg.Primes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Process wide cache of every prime from 2 up to the highest limit sieved so far (the high water mark). Requests
+ * below the high water mark are answered by slicing the cache, larger ones only need to sieve from the high water
+ * mark up and the cache is then extended with the result. The cache stops growing at a configured memory ceiling.
+ * <p/>
+ * Readers never lock, the primes and the high water mark are published together as an immutable snapshot which is
+ * swapped on every extension.
+ */
+@Singleton
+public class PrimeCache implements PrimeCacheMXBean {
+
+	private static final Logger log = LoggerFactory.getLogger(PrimeCache.class);
+
+	private final long maxBytes;
+
+	private volatile Snapshot snapshot = new Snapshot(new Primes(), 1);
+
+	private final Lock extensionLock = new ReentrantLock();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong extensions = new AtomicLong();
+
+	/**
+	 * @param maxBytes the memory ceiling of the cache in bytes
+	 */
+	@Inject
+	public PrimeCache(@Named("primeCache.maxBytes") long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Looks up the primes in the given range and counts a hit or a miss
+	 *
+	 * @param from the lower limit (inclusive) of the range
+	 * @param to   the upper limit (inclusive) of the range
+	 * @return the primes in the range or null if the range goes above the high water mark
+	 */
+	public Primes get(long from, long to) {
+		Snapshot current = snapshot;
+		if (to <= current.highWater) {
+			hits.incrementAndGet();
+			return current.primes.range(from, to);
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Slices the primes in the given range without counting a hit or a miss, used once the cache has been extended
+	 *
+	 * @param from the lower limit (inclusive) of the range
+	 * @param to   the upper limit (inclusive) of the range, not above the high water mark
+	 * @return the primes in the range
+	 */
+	public Primes slice(long from, long to) {
+		return snapshot.primes.range(from, to);
+	}
+
+	/**
+	 * Checks if the cache would stay below its memory ceiling when holding every prime up to the given limit
+	 *
+	 * @param to the limit to check
+	 * @return true if the cache can be extended up to the limit
+	 */
+	public boolean canExtendTo(long to) {
+		return estimateBytes(to) <= maxBytes;
+	}
+
+	/**
+	 * Takes the lock used to make sure a single request at a time extends the cache, so the others can wait for it
+	 * and then slice the result instead of sieving the same range again
+	 *
+	 * @param timeout how long to wait for the lock
+	 * @param unit    the unit of the timeout
+	 * @return true if the lock was taken, the caller must then call {@link #unlockExtension()}
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean lockExtension(long timeout, TimeUnit unit) throws InterruptedException {
+		return extensionLock.tryLock(timeout, unit);
+	}
+
+	/**
+	 * Releases the lock taken with {@link #lockExtension(long, TimeUnit)}
+	 */
+	public void unlockExtension() {
+		extensionLock.unlock();
+	}
+
+	/**
+	 * Extends the cache with the primes sieved from just above the high water mark up to the given limit. The
+	 * caller must hold the extension lock
+	 *
+	 * @param to     the new high water mark
+	 * @param primes all the primes above the current high water mark up to the new one
+	 */
+	public void extend(long to, Primes primes) {
+		Snapshot current = snapshot;
+		Primes extended = new Primes();
+		extended.addAll(current.primes);
+		extended.addAll(primes);
+		snapshot = new Snapshot(extended, to);
+		extensions.incrementAndGet();
+		log.debug("Prime cache extended from {} to {}, holding {} primes", current.highWater, to, extended.size());
+	}
+
+	/**
+	 * Fills the cache, while it is still empty, with the primes of the {@link PrimeTable} on a warm start, so it is
+	 * only extended above the table. The primes point into the mapped file and take no heap
+	 *
+	 * @param to     the limit of the table
+	 * @param primes every prime from 2 up to the limit
+	 * @return true if the cache was seeded, false if it is not empty or the limit is above its memory ceiling
+	 */
+	public boolean seed(long to, Primes primes) {
+		extensionLock.lock();
+		try {
+			if (snapshot.highWater > 1 || !canExtendTo(to)) {
+				return false;
+			}
+			snapshot = new Snapshot(primes, to);
+			log.debug("Prime cache seeded up to {} with {} primes", to, primes.size());
+			return true;
+		} finally {
+			extensionLock.unlock();
+		}
+	}
+
+	@Override
+	public long getHighWater() {
+		return snapshot.highWater;
+	}
+
+	@Override
+	public long getBytes() {
+		return (long) snapshot.primes.size() * Primes.BYTES_PER_PRIME;
+	}
+
+	@Override
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	@Override
+	public long getHits() {
+		return hits.get();
+	}
+
+	@Override
+	public long getMisses() {
+		return misses.get();
+	}
+
+	@Override
+	public long getExtensions() {
+		return extensions.get();
+	}
+
+	//an upper bound of the number of primes up to the given limit (Rosser and Schoenfeld) times the prime size
+	private static long estimateBytes(long to) {
+		if (to < 17) {
+			return 7L * Primes.BYTES_PER_PRIME;
+		}
+		return (long) (1.25506 * to / Math.log(to)) * Primes.BYTES_PER_PRIME;
+	}
+
+	/**
+	 * The primes in the cache along with the high water mark they go up to
+	 */
+	private static class Snapshot {
+		private final Primes primes;
+		private final long highWater;
+
+		Snapshot(Primes primes, long highWater) {
+			this.primes = primes;
+			this.highWater = highWater;
+		}
+	}
+}
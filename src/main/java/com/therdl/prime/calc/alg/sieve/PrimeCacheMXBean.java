@@ -0,0 +1,37 @@
+package com.therdl.prime.calc.alg.sieve;
+
+/**
+ * The management interface of the {@link PrimeCache}, exposed over JMX so the cache can be sized
+ */
+public interface PrimeCacheMXBean {
+
+	/**
+	 * @return the limit up to which the cache holds every prime
+	 */
+	long getHighWater();
+
+	/**
+	 * @return the bytes held by the cached primes
+	 */
+	long getBytes();
+
+	/**
+	 * @return the memory ceiling of the cache in bytes
+	 */
+	long getMaxBytes();
+
+	/**
+	 * @return the number of requests answered from the cache
+	 */
+	long getHits();
+
+	/**
+	 * @return the number of requests that went above the high water mark
+	 */
+	long getMisses();
+
+	/**
+	 * @return the number of times the cache was extended
+	 */
+	long getExtensions();
+}
@@ -0,0 +1,402 @@
+package com.therdl.prime.calc.alg.sieve;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.therdl.prime.calc.alg.Primes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Persistent table of every prime up to a limit, kept in a file which is memory mapped so the primes survive a
+ * restart and every JVM on the host shares the same pages through the OS page cache. Ranges covered by the table are
+ * served straight from the mapped region, the bitmap is never copied to the heap.
+ * <p/>
+ * The file is little endian and made of a header, an index and a bitmap split in blocks of one sieve segment each.
+ * The header holds the magic number, the format version, the words per block, the limit, the number of blocks, the
+ * most blocks a file can hold and the number of primes. The index has room for one long per block a file can hold,
+ * the number of odd primes before the block. In the bitmap bit i stands for the odd number 2 * i + 1 and a set bit
+ * means prime.
+ * <p/>
+ * The table is extended in the background from the {@link PrimeCache} whenever the cache goes above it. Only the
+ * primes above the limit of the table are written: the bits are added to the last block and the blocks after it are
+ * appended, then the index entries of the new blocks and the header. The bytes below the old limit never change and
+ * the file only grows, so JVMs that mapped it before keep reading it safely. The writers of every JVM sharing the
+ * file take turns through a file lock. A file in another format is replaced in one go through a temporary file.
+ */
+@Singleton
+public class PrimeTable {
+
+	private static final Logger log = LoggerFactory.getLogger(PrimeTable.class);
+
+	//"PRIMETAB"
+	private static final long MAGIC = 0x5052494d45544142L;
+	private static final int VERSION = 2;
+	private static final int HEADER_BYTES = 64;
+
+	/**
+	 * The number of 64 bit words in a block of the bitmap, one sieve segment
+	 */
+	public static final int BLOCK_WORDS = Sieve.SEGMENT_WORDS;
+
+	//the integers covered by a block, each bit stands for one odd number
+	private static final long BLOCK_SIZE = Sieve.SEGMENT_SIZE;
+	private static final long BLOCK_BITS = BLOCK_WORDS * 64L;
+
+	//a file is mapped in one go so it can not be larger than a single mapping
+	private static final long MAX_FILE_BYTES = Integer.MAX_VALUE;
+
+	//the index has room for the blocks of the largest file up front, so appending blocks never moves the bitmap
+	private static final int MAX_BLOCKS = (int) ((MAX_FILE_BYTES - HEADER_BYTES) / (8 + BLOCK_WORDS * 8L));
+	private static final long BITMAP_OFFSET = HEADER_BYTES + MAX_BLOCKS * 8L;
+
+	//null when the table is disabled
+	private final Path path;
+
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "prime-table-writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	//the newest primes waiting to be written, older ones are dropped
+	private final AtomicReference<Pending> pending = new AtomicReference<>();
+
+	private volatile Mapping mapping;
+
+	/**
+	 * Maps the table file if there is one
+	 *
+	 * @param path the table file, an empty path disables the table
+	 */
+	@Inject
+	public PrimeTable(@Named("primeTable.path") String path) {
+		this.path = path.trim().isEmpty() ? null : Paths.get(path.trim()).toAbsolutePath();
+		if (this.path != null && Files.exists(this.path)) {
+			try {
+				open();
+			} catch (IOException e) {
+				log.warn("Could not map the prime table " + this.path + ", it will be written again", e);
+			}
+		}
+	}
+
+	/**
+	 * @return the limit up to which the table holds every prime, 0 if there is no table
+	 */
+	public long getLimit() {
+		Mapping current = mapping;
+		return current == null ? 0 : current.limit;
+	}
+
+	/**
+	 * Looks up the primes in the given range. The primes point into the mapped file, nothing is copied
+	 *
+	 * @param from the lower limit (inclusive) of the range
+	 * @param to   the upper limit (inclusive) of the range
+	 * @return the primes in the range or null if the range goes above the table
+	 */
+	public Primes get(long from, long to) {
+		Mapping current = mapping;
+		if (current == null || to > current.limit) {
+			return null;
+		}
+		Primes primes = new Primes();
+		if (from <= 2 && 2 <= to) {
+			primes.add(2);
+		}
+		from = Math.max(from, 3);
+		for (long block = from / BLOCK_SIZE; block <= to / BLOCK_SIZE; block++) {
+			long firstBit = Math.max(block * BLOCK_BITS, from / 2);
+			long endBit = Math.min((block + 1) * BLOCK_BITS, (to + 1) / 2);
+			primes.add(0, current.words, firstBit, endBit);
+		}
+		return primes;
+	}
+
+	/**
+	 * Counts the primes up to the given limit using the block index, so only part of one block is scanned
+	 *
+	 * @param to the upper limit (inclusive), not above the table limit
+	 * @return the number of primes up to the limit
+	 */
+	public long count(long to) {
+		Mapping current = mapping;
+		if (current == null || to > current.limit) {
+			throw new IllegalArgumentException("The prime table does not go up to " + to);
+		}
+		if (to < 2) {
+			return 0;
+		}
+		int block = (int) (to / BLOCK_SIZE);
+		long count = 1 + current.index.get(block);
+		long endBit = (to + 1) / 2;
+		for (long bit = block * BLOCK_BITS; bit < endBit; bit += 64) {
+			long word = current.words.get((int) (bit >>> 6));
+			count += Long.bitCount(endBit - bit >= 64 ? word : word & ((1L << (endBit - bit)) - 1));
+		}
+		return count;
+	}
+
+	/**
+	 * Extends the table in the background if the given primes go above it. Calls made while a write is going on are
+	 * coalesced so only the newest primes get written next
+	 *
+	 * @param from   the lower limit (inclusive) of the given primes, at most one above the limit of the table
+	 * @param limit  the limit up to which the primes are complete
+	 * @param primes every prime from 'from' up to the limit
+	 */
+	public void writeInBackground(long from, long limit, Primes primes) {
+		if (path == null || limit <= getLimit() || fileBytes(limit) > MAX_FILE_BYTES) {
+			return;
+		}
+		if (pending.getAndSet(new Pending(from, limit, primes)) == null) {
+			writer.execute(this::writePending);
+		}
+	}
+
+	private void writePending() {
+		Pending next = pending.getAndSet(null);
+		if (next == null || next.limit <= getLimit()) {
+			return;
+		}
+		try {
+			write(next.from, next.limit, next.primes);
+			open();
+		} catch (IOException e) {
+			log.warn("Could not write the prime table " + path, e);
+		}
+	}
+
+	/**
+	 * Extends the table file up to the given limit under the file lock. The file may have been extended by another
+	 * JVM in the meantime, only the primes above its limit are written
+	 *
+	 * @param from   the lower limit (inclusive) of the given primes
+	 * @param limit  the limit up to which the primes are complete
+	 * @param primes every prime from 'from' up to the limit
+	 * @throws IOException if the file can not be written
+	 */
+	void write(long from, long limit, Primes primes) throws IOException {
+		long begin = System.currentTimeMillis();
+		Files.createDirectories(path.getParent());
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			FileLock lock = channel.lock();
+			try {
+				ByteBuffer header = readHeader(channel);
+				if (header == null && channel.size() > 0) {
+					replace(from, limit, primes);
+					return;
+				}
+				long tableLimit = header == null ? 0 : header.getLong(16);
+				int tableBlocks = header == null ? 0 : header.getInt(24);
+				if (limit <= tableLimit) {
+					return;
+				}
+				if (from > tableLimit + 1) {
+					log.debug("The prime table {} is below the primes to write, from {} on", path, from);
+					return;
+				}
+				append(channel, tableLimit, tableBlocks, limit, primes);
+			} finally {
+				lock.release();
+			}
+		}
+		log.info("Prime table {} written up to {} in {} ms", path, limit, System.currentTimeMillis() - begin);
+	}
+
+	//a file in another format is written from scratch into a temporary file which then replaces it
+	private void replace(long from, long limit, Primes primes) throws IOException {
+		if (from > 1) {
+			log.debug("The prime table {} is in another format and the primes to write start at {}", path, from);
+			return;
+		}
+		Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				append(channel, 0, 0, limit, primes);
+			}
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Adds the primes above the limit of the table to its last block and appends the blocks after it, then their
+	 * index entries and the header, so a JVM mapping the file meanwhile never sees a header ahead of the bitmap
+	 */
+	private static void append(FileChannel channel, long tableLimit, int tableBlocks, long limit, Primes primes)
+			throws IOException {
+		int blocks = (int) (limit / BLOCK_SIZE + 1);
+		int first = tableBlocks == 0 ? 0 : tableBlocks - 1;
+		ByteBuffer index = ByteBuffer.allocate((blocks - first) * 8).order(ByteOrder.LITTLE_ENDIAN);
+		ByteBuffer block = ByteBuffer.allocate(BLOCK_WORDS * 8).order(ByteOrder.LITTLE_ENDIAN);
+		long[] words = new long[BLOCK_WORDS];
+		long count = 0;
+		if (tableBlocks > 0) {
+			ByteBuffer entry = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(channel, entry, HEADER_BYTES + first * 8L);
+			count = entry.getLong(0);
+		}
+
+		//the blocks are filled one at a time, 2 is the only even prime and is left out of the bitmap
+		PrimitiveIterator.OfLong iterator = primes.range(Math.max(3, tableLimit + 1), limit).iterator();
+		long prime = iterator.hasNext() ? iterator.nextLong() : Long.MAX_VALUE;
+		for (int b = first; b < blocks; b++) {
+			long position = BITMAP_OFFSET + (long) b * BLOCK_WORDS * 8;
+			block.clear();
+			if (b < tableBlocks) {
+				readFully(channel, block, position);
+				block.clear();
+				block.asLongBuffer().get(words);
+			} else {
+				Arrays.fill(words, 0L);
+			}
+			index.putLong(count);
+			long blockEnd = (b + 1) * BLOCK_SIZE;
+			while (prime < blockEnd) {
+				int bit = (int) ((prime - b * BLOCK_SIZE) >>> 1);
+				words[bit >>> 6] |= 1L << bit;
+				prime = iterator.hasNext() ? iterator.nextLong() : Long.MAX_VALUE;
+			}
+			for (long word : words) {
+				count += Long.bitCount(word);
+			}
+			block.clear();
+			block.asLongBuffer().put(words);
+			writeFully(channel, block, position);
+		}
+
+		index.flip();
+		writeFully(channel, index, HEADER_BYTES + first * 8L);
+		channel.force(false);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putLong(MAGIC).putInt(VERSION).putInt(BLOCK_WORDS).putLong(limit).putInt(blocks).putInt(MAX_BLOCKS)
+				.putLong(limit >= 2 ? count + 1 : 0);
+		header.clear();
+		writeFully(channel, header, 0);
+		channel.force(true);
+	}
+
+	//the header of the file if it is a table in this format, null otherwise
+	private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+		if (channel.size() < HEADER_BYTES) {
+			return null;
+		}
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(channel, header, 0);
+		long limit = header.getLong(16);
+		boolean valid = header.getLong(0) == MAGIC && header.getInt(8) == VERSION && header.getInt(12) == BLOCK_WORDS
+				&& header.getInt(28) == MAX_BLOCKS && limit >= 0 && header.getInt(24) == limit / BLOCK_SIZE + 1
+				&& channel.size() >= fileBytes(limit);
+		return valid ? header : null;
+	}
+
+	/**
+	 * Maps the table file, replacing the current mapping
+	 *
+	 * @throws IOException if the file can not be read or is not a valid table
+	 */
+	void open() throws IOException {
+		MappedByteBuffer buffer;
+		long limit;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			//shared with the other readers, a writer finishes its append first
+			FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+			try {
+				ByteBuffer header = readHeader(channel);
+				if (header == null) {
+					throw new IOException("Not a prime table, written with another format version or truncated");
+				}
+				limit = header.getLong(16);
+				//the mapping stays valid after the channel is closed
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileBytes(limit));
+			} finally {
+				lock.release();
+			}
+		}
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		mapping = new Mapping(limit, slice(buffer, HEADER_BYTES), slice(buffer, (int) BITMAP_OFFSET));
+		log.info("Prime table {} mapped up to {} holding {} primes", path, limit, buffer.getLong(32));
+	}
+
+	private static long fileBytes(long limit) {
+		long blocks = limit / BLOCK_SIZE + 1;
+		return BITMAP_OFFSET + blocks * BLOCK_WORDS * 8;
+	}
+
+	private static LongBuffer slice(ByteBuffer buffer, int position) {
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.position(position);
+		return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		int read = 0;
+		while (buffer.hasRemaining()) {
+			int bytes = channel.read(buffer, position + read);
+			if (bytes < 0) {
+				throw new IOException("The prime table is truncated");
+			}
+			read += bytes;
+		}
+	}
+
+	private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		int written = 0;
+		while (buffer.hasRemaining()) {
+			written += channel.write(buffer, position + written);
+		}
+		return written;
+	}
+
+	/**
+	 * The mapped index and bitmap along with the limit they go up to
+	 */
+	private static class Mapping {
+		private final long limit;
+		private final LongBuffer index;
+		private final LongBuffer words;
+
+		Mapping(long limit, LongBuffer index, LongBuffer words) {
+			this.limit = limit;
+			this.index = index;
+			this.words = words;
+		}
+	}
+
+	/**
+	 * Primes waiting to be written
+	 */
+	private static class Pending {
+		private final long from;
+		private final long limit;
+		private final Primes primes;
+
+		Pending(long from, long limit, Primes primes) {
+			this.from = from;
+			this.limit = limit;
+			this.primes = primes;
+		}
+	}
+}
@@ -1,98 +1,185 @@
 package com.therdl.prime.calc.alg.sieve;
 
-import com.therdl.prime.calc.alg.ConcurrentUtil;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.therdl.prime.calc.alg.Primes;
 
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Arrays;
 
 /**
- * Wrapper class for the sieve used in the Sieve_of_Eratosthenes algorithm providing convenience methods.
- * It holds all the integers up to a given limit in a memory efficient way, each one having a primality flag
+ * Wrapper class for one segment of the sieve used in the Sieve_of_Eratosthenes algorithm providing convenience
+ * methods. It holds the integers of a window [low, high] each one having a primality flag. The segment is sized to
+ * fit the CPU cache so crossing off multiples never has to go out to main memory.
  * Created by Alex on 23/04/2016.
  */
 public class Sieve {
 
-	private static final Logger log = LoggerFactory.getLogger(Sieve.class);
+	/**
+	 * The number of 64 bit words backing a segment, 256KB sized for a typical L2 cache
+	 */
+	public static final int SEGMENT_WORDS = 32 * 1024;
+
+	/**
+	 * The number of integers a segment holds, each bit stands for one odd number so a word covers 128 integers
+	 */
+	public static final int SEGMENT_SIZE = SEGMENT_WORDS * 128;
 
-	//because the sieve is a memory intensive data structure as it grows exponentially with the limit, we use a low
-	//memory footprint data structure to hold it
-	//the index of the flag is the integer it represents (adjusting for 0 based array indexing) and the boolean value
-	//is the primality flag as in true = NOT prime (just because the default is false)
-	private boolean[] contents;
+	/**
+	 * The memory taken by a segment
+	 */
+	public static final int SEGMENT_BYTES = SEGMENT_WORDS * Long.BYTES;
 
-	private AtomicInteger lowestPrimeCandidate;
-	private final int limit;
+	//the sieve is bit packed and holds the odd numbers only as every even number but 2 is not prime
+	//bit i of the segment stands for the integer low + 2 * i + 1 and a set bit is the primality flag as in
+	//1 = NOT prime (just because the default is 0)
+	private final long[] words;
 
-	final Lock lock = new ReentrantLock();
-	final Condition done = lock.newCondition();
+	private long first;
+	private long low;
+	private long high;
+	private int bits;
 
 	/**
-	 * Creates a new sieve with contents up to the given limit
+	 * Creates a new empty sieve segment able to hold up to {@link #SEGMENT_SIZE} integers. The segment can be reused
+	 * for many windows, please see {@link #reset(long, long)}
+	 */
+	public Sieve() {
+		words = new long[SEGMENT_WORDS];
+	}
+
+	/**
+	 * Points the segment at a new window and marks every integer in it as a prime candidate
 	 *
-	 * @param limit the upper limit of the sieve
+	 * @param first the lower limit of the window (inclusive)
+	 * @param high  the upper limit of the window (inclusive), at most {@link #SEGMENT_SIZE} - 1 above first
 	 */
-	public Sieve(int limit) {
-		this.limit = limit;
-		contents = new boolean[limit];
-		//2 is the first prime number so we initialize with it
-		lowestPrimeCandidate = new AtomicInteger(2);
+	public void reset(long first, long high) {
+		this.first = first;
+		//the bits are aligned on an even number so that the first bit is always an odd number
+		this.low = first & ~1L;
+		this.high = high;
+		this.bits = (int) ((high - low + 1) / 2);
+		Arrays.fill(words, 0, (bits + 63) >>> 6, 0L);
 	}
 
 	/**
-	 * Remove the given number from the sieve Please note this number is 1 based so we need to pass the actual integer
-	 * number, we do not need to adjust
+	 * Remove the given number from the sieve. Please note we need to pass the actual integer number, we do not need
+	 * to adjust for the low end of the segment. Even numbers are not held by the sieve so they are ignored
 	 *
 	 * @param nr the number who'se flag we set
 	 */
-	public void remove(int nr) {
-		contents[nr - 1] = true;
-		if (nr == lowestPrimeCandidate.get()) {
-			calculateLowestPrimeCandidate();
+	public void remove(long nr) {
+		if ((nr & 1) == 1) {
+			int bit = (int) ((nr - low) >>> 1);
+			words[bit >>> 6] |= 1L << bit;
 		}
 	}
 
 	/**
-	 * @return the limit up to which the sieve holds contents
+	 * Removes all the multiples of the given base primes from the window, leaving only the primes in it
+	 *
+	 * @param basePrimes all the primes up to at least the square root of the upper limit of the window, in order
 	 */
-	public int getLimit() {
-		return limit;
+	public void crossOff(int[] basePrimes) {
+		for (int p : basePrimes) {
+			if (p == 2) {
+				//the even numbers are not held by the sieve
+				continue;
+			}
+			long square = (long) p * p;
+			if (square > high) {
+				break;
+			}
+			long multiple = Math.max(square, ((low + p - 1) / p) * p);
+			if ((multiple & 1) == 0) {
+				multiple += p;
+			}
+			//consecutive odd multiples are 2p apart which is p bits apart
+			for (int bit = (int) ((multiple - low) >>> 1); bit < bits; bit += p) {
+				words[bit >>> 6] |= 1L << bit;
+			}
+		}
+		//1 is not a prime
+		if (low <= 1 && 1 <= high) {
+			remove(1);
+		}
 	}
 
 	/**
-	 * @return at any point in time this variable holds the lowest value in the sieve that has not (YET) been
-	 * flagged as not prime (has not yet been eliminated from the sieve)
+	 * @return the numbers in the window that are still flagged as prime, in order
 	 */
-	public AtomicInteger getLowestPrimeCandidate() {
-		return lowestPrimeCandidate;
+	public Primes getPrimes() {
+		boolean withTwo = first <= 2 && 2 <= high;
+		int[] offsets = new int[count() + (withTwo ? 1 : 0)];
+		int index = 0;
+		if (withTwo) {
+			offsets[index++] = (int) (2 - low);
+		}
+		int wordCount = (bits + 63) >>> 6;
+		for (int w = 0; w < wordCount; w++) {
+			long candidates = ~words[w] & validMask(w);
+			while (candidates != 0) {
+				int bit = (w << 6) + Long.numberOfTrailingZeros(candidates);
+				offsets[index++] = 2 * bit + 1;
+				candidates &= candidates - 1;
+			}
+		}
+		Primes primes = new Primes();
+		primes.add(low, offsets, index);
+		return primes;
 	}
 
 	/**
-	 * @return the condition used in conjunction with {@link #getLock()} to signal the end of processing
+	 * @return the lower limit of the window (inclusive)
 	 */
-	public Condition getDone() {
-		return done;
+	public long getFirst() {
+		return first;
 	}
 
 	/**
-	 * @return the lock used in conjunction with {@link #getDone()} to signal the end of processing
+	 * @return the upper limit of the window (inclusive)
 	 */
-	public Lock getLock() {
-		return lock;
+	public long getHigh() {
+		return high;
 	}
 
-	private void calculateLowestPrimeCandidate() {
-		for (int i = lowestPrimeCandidate.get(); i < contents.length; i++) {
-			if (!contents[i]) {
-				lowestPrimeCandidate.set(i + 1);
-				return;
+	/**
+	 * Calculates the primes up to a small limit using the classic non segmented sieve. This is used to obtain the
+	 * base primes (up to the square root of the limit) which are then used to sieve each segment
+	 *
+	 * @param limit the upper limit (inclusive)
+	 * @return all the primes up to the limit in order
+	 */
+	public static int[] smallPrimes(int limit) {
+		if (limit < 2) {
+			return new int[0];
+		}
+		boolean[] composite = new boolean[limit + 1];
+		int[] primes = new int[limit + 1];
+		int count = 0;
+		for (int i = 2; i <= limit; i++) {
+			if (!composite[i]) {
+				primes[count++] = i;
+				for (long multiple = (long) i * i; multiple <= limit; multiple += i) {
+					composite[(int) multiple] = true;
+				}
 			}
 		}
-		log.debug("Sieve signalling DONE");
-		ConcurrentUtil.signalDone(lock, done);
+		return Arrays.copyOf(primes, count);
+	}
+
+	//the odd numbers still flagged as prime, leaving out 2 which is even
+	private int count() {
+		int count = 0;
+		int wordCount = (bits + 63) >>> 6;
+		for (int w = 0; w < wordCount; w++) {
+			count += Long.bitCount(~words[w] & validMask(w));
+		}
+		return count;
+	}
+
+	//the last word can be partially used by the window
+	private long validMask(int word) {
+		int used = bits - (word << 6);
+		return used >= 64 ? -1L : (1L << used) - 1;
 	}
 
 }
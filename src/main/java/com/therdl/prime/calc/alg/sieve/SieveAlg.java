@@ -1,18 +1,27 @@
 package com.therdl.prime.calc.alg.sieve;
 
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
-import com.therdl.prime.calc.alg.ConcurrentUtil;
+import com.therdl.prime.calc.alg.Flight;
+import com.therdl.prime.calc.alg.Flights;
+import com.therdl.prime.calc.alg.MemoryGovernor;
+import com.therdl.prime.calc.alg.Primes;
+import com.therdl.prime.calc.alg.Scheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.PrimitiveIterator;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 /**
- * Contains the Sieve_of_Eratosthenes algorithm for calculating prime numbers up to a certain limit
- * https://en.wikipedia.org/wiki/Sieve_of_Eratosthenes
+ * Contains the segmented Sieve_of_Eratosthenes algorithm for calculating prime numbers in a range
+ * https://en.wikipedia.org/wiki/Sieve_of_Eratosthenes#Segmented_sieve
+ * The base primes up to the square root of the upper limit are calculated first, then the range is split into cache
+ * sized segments which are sieved in parallel and concatenated in order. Only the requested range is sieved so a
+ * narrow window high up costs roughly O(window + sqrt(to)). The base primes, the segments and the primes found are
+ * reserved with the {@link MemoryGovernor} while the range is sieved, the caller accounts for the primes it holds on
+ * to after that.
  * Created by Alex on 23/04/2016.
  */
 @Singleton
@@ -20,38 +29,169 @@ public class SieveAlg {
 
 	private static final Logger log = LoggerFactory.getLogger(SieveAlg.class);
 
+	private final PrimeCache cache;
+
+	private final PrimeTable table;
+
+	//concurrent requests covered by a running one subscribe to it
+	private final Flights flights = new Flights();
+
+	private final Scheduler scheduler;
+
+	private final MemoryGovernor governor;
+
+	@Inject
+	public SieveAlg(PrimeCache cache, PrimeTable table, Scheduler scheduler, MemoryGovernor governor) {
+		this.cache = cache;
+		this.table = table;
+		this.scheduler = scheduler;
+		this.governor = governor;
+		//on a warm start the prefix is already in the table, the cache only has to be extended above it
+		if (table.getLimit() >= 2) {
+			cache.seed(table.getLimit(), table.get(0, table.getLimit()));
+		}
+	}
+
 	/**
-	 * The entry point to the algorithm
+	 * The entry point to the algorithm. Ranges covered by the {@link PrimeTable} are served from the mapped file and
+	 * ranges below the high water mark of the {@link PrimeCache} are sliced from it. A range starting close to the
+	 * high water mark extends the cache as long as it stays below its memory ceiling, any other range is sieved on its
+	 * own so a window high up never pays for the primes below it. Concurrent requests covered
+	 * by a range being sieved share it through {@link Flights}, answered as soon as their part is sieved.
 	 *
-	 * @param limit the upper limit to the prime numbers search
+	 * @param from     the lower limit (inclusive) of the prime numbers search
+	 * @param to       the upper limit (inclusive) of the prime numbers search
+	 * @param deadline the {@link System#nanoTime()} by which the processing has to finish
 	 * @return the list of prime numbers found
 	 */
-	public SortedSet<Integer> process(int limit) throws TimeoutException, InterruptedException {
+	public Primes process(long from, long to, long deadline) throws TimeoutException, InterruptedException {
 		log.debug("SieveAlg process BEGIN");
 
-		if (limit < 2) {
-			return new TreeSet<>();
+		if (to < 2 || from > to) {
+			return new Primes();
 		}
 
-		Sieve sieve = new Sieve(limit);
-		Workers workers = new Workers(sieve);
+		Primes stored = table.get(from, to);
+		if (stored != null) {
+			log.debug("SieveAlg answered from the prime table");
+			return stored;
+		}
+		Primes cached = cache.get(from, to);
+		if (cached != null) {
+			log.debug("SieveAlg answered from the cache");
+			return cached;
+		}
+		return flights.run(from, to, deadline, flight -> compute(from, to, deadline, flight));
+	}
+
+	/**
+	 * @param from the lower limit (inclusive) of a range
+	 * @param to   the upper limit (inclusive) of the range
+	 * @return true if the range is answered from the {@link PrimeTable} or the {@link PrimeCache} without sieving
+	 */
+	public boolean isStored(long from, long to) {
+		return to <= table.getLimit() || to <= cache.getHighWater();
+	}
+
+	//extends the cache up to the range if it starts close to the high water mark, otherwise sieves it on its own
+	private void compute(long from, long to, long deadline, Flight flight)
+			throws TimeoutException, InterruptedException {
+		if (!extendsCache(from, to)) {
+			sieve(from, to, deadline, flight);
+			return;
+		}
+
+		if (!cache.lockExtension(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+			log.debug("Timed out waiting for the cache ->");
+			throw new TimeoutException("Processing timed out");
+		}
 		try {
-			sieve.getLock().lock();
-			log.debug("Starting workers, waiting for DONE signal");
-			workers.start();
-			if (!sieve.getDone().await(5, TimeUnit.SECONDS)) {
-				log.debug("Timed out after 5 seconds ->");
-				throw new TimeoutException("Processing timed out after 5 seconds");
+			//another request may have extended the cache while we were waiting
+			long highWater = cache.getHighWater();
+			if (to > highWater) {
+				flight.append(cache.slice(from, highWater), highWater);
+				cache.extend(to, sieve(highWater + 1, to, deadline, flight));
+				//only the primes above the table are appended to it
+				long tableLimit = table.getLimit();
+				if (to > tableLimit) {
+					table.writeInBackground(tableLimit + 1, to, cache.slice(tableLimit + 1, to));
+				}
+			} else {
+				flight.append(cache.slice(from, to), to);
 			}
-			log.debug("SieveAlg picked up DONE signal");
-
-			log.debug("Stopping the workers");
-			ConcurrentUtil.stop(workers.getExecutor());
 		} finally {
-			sieve.getLock().unlock();
+			cache.unlockExtension();
 		}
+	}
 
-		return workers.getPrimes();
+	/**
+	 * The cache is only extended when the gap between its high water mark and the range is no wider than the range
+	 * itself, so extending it costs at most about twice sieving the range alone. Growing limits extend the cache
+	 * step by step while a narrow window high up neither sieves the whole prefix nor waits for the extension lock.
+	 */
+	private boolean extendsCache(long from, long to) {
+		long gap = from - cache.getHighWater() - 1;
+		return cache.canExtendTo(to) && gap <= to - from + 1;
+	}
+
+	private Primes sieve(long from, long to, long deadline, Flight flight)
+			throws TimeoutException, InterruptedException {
+		Primes primes = new Primes();
+		//the segments are concatenated in order, sharing their chunks
+		for (Primes segment : sieve(from, to, basePrimes(to, deadline), deadline, flight)) {
+			primes.addAll(segment);
+		}
+		return primes;
+	}
+
+	/**
+	 * Calculates the base primes needed to sieve up to the given limit. Small sets of base primes come from the
+	 * classic sieve, larger ones are sieved in segments themselves so the memory footprint stays low
+	 *
+	 * @param to       the upper limit the base primes are for
+	 * @param deadline the {@link System#nanoTime()} by which the calculation has to finish
+	 * @return all the primes up to the square root of the limit, in order
+	 */
+	public int[] basePrimes(long to, long deadline) throws TimeoutException, InterruptedException {
+		long root = sqrt(to);
+		if (root <= Sieve.SEGMENT_SIZE) {
+			return Sieve.smallPrimes((int) root);
+		}
+		Primes primes = new Primes();
+		for (Primes segment : sieve(0, root, basePrimes(root, deadline), deadline, null)) {
+			primes.addAll(segment);
+		}
+		int[] basePrimes = new int[primes.size()];
+		PrimitiveIterator.OfLong iterator = primes.iterator();
+		for (int i = 0; i < basePrimes.length; i++) {
+			basePrimes[i] = (int) iterator.nextLong();
+		}
+		return basePrimes;
+	}
+
+	//the segments in flight take a worker each, with less memory free fewer of them are sieved at a time
+	private Primes[] sieve(long from, long to, int[] basePrimes, long deadline, Flight flight)
+			throws TimeoutException, InterruptedException {
+		//the base primes are held by every segment until the range is sieved
+		long heldBytes = Primes.estimateBytes(from, to) + (long) basePrimes.length * Integer.BYTES;
+		int maxWorkers = (int) Math.min(scheduler.getThreads(), (to - from) / Sieve.SEGMENT_SIZE + 1);
+		try (MemoryGovernor.Reservation reservation = governor.reserve(heldBytes + Sieve.SEGMENT_BYTES,
+				heldBytes + (long) maxWorkers * Sieve.SEGMENT_BYTES, deadline)) {
+			int workers = (int) ((reservation.getBytes() - heldBytes) / Sieve.SEGMENT_BYTES);
+			return new Workers(from, to, basePrimes, flight, scheduler).run(workers, deadline);
+		}
+	}
+
+	//the exact integer square root, the floating point one can be off by one for large values
+	private static long sqrt(long nr) {
+		long root = (long) Math.sqrt((double) nr);
+		while (root * root > nr) {
+			root--;
+		}
+		while ((root + 1) * (root + 1) <= nr) {
+			root++;
+		}
+		return root;
 	}
 
 }
@@ -0,0 +1,96 @@
+package com.therdl.prime.calc.api;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admits a request to the compute pool only if it fits in the capacity left by the ones already admitted, going by
+ * their {@link Cost}. The requests admitted and not done yet form a backlog of work and hold memory:
+ * <ul>
+ * <li>a request whose bytes do not fit in what is left of 'admission.maxBytes' is shed with {@link Error#OVERLOADED}
+ * </li>
+ * <li>a request that cannot finish by its deadline behind the backlog is shed with {@link Error#TOO_BUSY}, the
+ * requests answering with the primes proven so far are only shed if the backlog takes more than half their time</li>
+ * </ul>
+ * Either way the client is told to retry once the backlog has drained. A request is always admitted by an idle
+ * service, one that cannot finish in time times out as it would have anyway.
+ */
+@Singleton
+public class Admission {
+
+	private static final Logger log = LoggerFactory.getLogger(Admission.class);
+
+	private final long maxBytes;
+
+	//guarded by this
+	private long backlogNanos;
+	private long heldBytes;
+
+	/**
+	 * @param maxBytes the memory the admitted requests can hold together, 0 for half of the maximum heap
+	 */
+	@Inject
+	public Admission(@Named("admission.maxBytes") long maxBytes) {
+		this.maxBytes = maxBytes > 0 ? maxBytes : Runtime.getRuntime().maxMemory() / 2;
+	}
+
+	/**
+	 * A request admitted, its cost is held until it is closed
+	 */
+	public class Ticket implements AutoCloseable {
+
+		private final Cost cost;
+
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		private Ticket(Cost cost) {
+			this.cost = cost;
+		}
+
+		/**
+		 * Releases the cost of the request, only the first call counts
+		 */
+		@Override
+		public void close() {
+			if (closed.compareAndSet(false, true)) {
+				release(cost);
+			}
+		}
+	}
+
+	/**
+	 * @param cost     the estimated cost of the request
+	 * @param deadline the {@link System#nanoTime()} by which the request has to be processed
+	 * @return the ticket to close once the request is answered
+	 * @throws RejectedException if the request is shed
+	 */
+	public synchronized Ticket admit(Cost cost, long deadline) throws RejectedException {
+		long nanosLeft = deadline - System.nanoTime();
+		long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(backlogNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+		if (heldBytes > 0 && heldBytes + cost.getBytes() > maxBytes) {
+			log.debug("Shedding a request of {} bytes with {} bytes held", cost.getBytes(), heldBytes);
+			throw new RejectedException(Error.OVERLOADED, retryAfter);
+		}
+		boolean late = cost.isPartial()
+				? backlogNanos > nanosLeft / 2
+				: backlogNanos + cost.getNanos() > nanosLeft;
+		if (backlogNanos > 0 && late) {
+			log.debug("Shedding a request of {} ns behind a backlog of {} ns", cost.getNanos(), backlogNanos);
+			throw new RejectedException(Error.TOO_BUSY, retryAfter);
+		}
+		backlogNanos += cost.getNanos();
+		heldBytes += cost.getBytes();
+		return new Ticket(cost);
+	}
+
+	private synchronized void release(Cost cost) {
+		backlogNanos -= cost.getNanos();
+		heldBytes -= cost.getBytes();
+	}
+}
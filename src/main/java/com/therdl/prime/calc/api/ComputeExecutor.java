@@ -0,0 +1,62 @@
+package com.therdl.prime.calc.api;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The pool the servlets hand their requests to once read and validated, so the Jetty threads are free to serve other
+ * connections while the primes are calculated. It is sized apart from the Jetty pool by 'compute.threads', and at
+ * most 'compute.queueDepth' requests wait for a compute thread, the ones after that are rejected.
+ */
+@Singleton
+public class ComputeExecutor implements Executor {
+
+	private static final Logger log = LoggerFactory.getLogger(ComputeExecutor.class);
+
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * @param threads    the number of compute threads, 0 for one per processor
+	 * @param queueDepth the number of tasks that can wait for a compute thread
+	 */
+	@Inject
+	public ComputeExecutor(@Named("compute.threads") int threads, @Named("compute.queueDepth") int queueDepth) {
+		int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		log.debug("Starting {} compute threads", size);
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = task -> {
+			Thread thread = new Thread(task, "compute-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		this.executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueDepth), factory);
+	}
+
+	/**
+	 * @param task the task to run
+	 * @throws RejectedExecutionException if 'compute.queueDepth' tasks are waiting already
+	 */
+	@Override
+	public void execute(Runnable task) {
+		executor.execute(task);
+	}
+
+	/**
+	 * @return the number of tasks waiting for a compute thread
+	 */
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+}
@@ -0,0 +1,53 @@
+package com.therdl.prime.calc.api;
+
+/**
+ * The estimated cost of a request, worked out by the {@link CostModel} before the algorithm runs
+ */
+public class Cost {
+
+	private final long nanos;
+
+	private final long bytes;
+
+	private final boolean partial;
+
+	/**
+	 * @param nanos   the time the request takes on an idle service
+	 * @param bytes   the memory the request holds while it is processed and answered
+	 * @param partial true if a request running out of time answers with the primes proven so far
+	 */
+	public Cost(long nanos, long bytes, boolean partial) {
+		this.nanos = nanos;
+		this.bytes = bytes;
+		this.partial = partial;
+	}
+
+	/**
+	 * @param other the cost of another part of the same request
+	 * @return the cost of both parts, answering partially only if both do
+	 */
+	public Cost plus(Cost other) {
+		return new Cost(nanos + other.nanos, bytes + other.bytes, partial && other.partial);
+	}
+
+	/**
+	 * @return the time the request takes on an idle service, in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * @return the memory the request holds while it is processed and answered, in bytes
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return true if a request running out of time answers with the primes proven so far
+	 */
+	public boolean isPartial() {
+		return partial;
+	}
+}
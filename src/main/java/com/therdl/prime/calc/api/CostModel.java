@@ -0,0 +1,141 @@
+package com.therdl.prime.calc.api;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.therdl.prime.calc.alg.Primes;
+import com.therdl.prime.calc.alg.Scheduler;
+import com.therdl.prime.calc.alg.sieve.SieveAlg;
+import com.therdl.prime.calc.model.Method;
+
+import java.util.Arrays;
+
+/**
+ * Estimates the time and memory a request takes from its method and range, before the algorithm runs. The costs per
+ * number were calibrated on a single 64 bit core, 'admission.costScale' scales them to the host.
+ * <ul>
+ * <li>The sieve costs a little per number in the range plus the base primes up to the square root of 'to'</li>
+ * <li>Miller-Rabin costs the same per number wherever the range is</li>
+ * <li>The Lucas filter costs a pass over the range shared by its producers plus a trial division of every prime found
+ * by every base prime, which is what makes it expensive high up</li>
+ * <li>COUNT costs x^(3/4) for each bound counted and two arrays of square root size</li>
+ * <li>A primality check costs a Miller-Rabin test for every number above 'primality.bitsetLimit', the ones below it
+ * are looked up for next to nothing</li>
+ * <li>The n-th prime costs the count up to its estimate plus the windows sieved next to it</li>
+ * </ul>
+ * The primes found are held at {@link Primes#BYTES_PER_PRIME} each and streamed back one by one. The methods listing
+ * primes answer with a prefix if they run out of time, so their estimate is capped by the time left.
+ */
+@Singleton
+public class CostModel {
+
+	//the calibrated costs in nanoseconds
+	private static final double SIEVE_NANOS = 2.5;
+	private static final double SIEVE_BASE_NANOS = 10;
+	private static final double MILLER_RABIN_NANOS = 250;
+	private static final double LUCAS_NANOS = 450;
+	private static final double DIVISION_NANOS = 4;
+	private static final double COUNT_NANOS = 2;
+	private static final double PRIMALITY_NANOS = 500;
+	//the windows the n-th prime sieves next to its estimate, one or two of them
+	private static final double NTH_PRIME_SIEVED = 2 << 20;
+	private static final double WRITE_NANOS = 20;
+
+	private final Scheduler scheduler;
+
+	private final SieveAlg sieveAlg;
+
+	private final double costScale;
+
+	private final long bitsetLimit;
+
+	/**
+	 * @param scheduler   the pool the algorithms run on, the parallel parts are shared between its threads
+	 * @param sieveAlg    the sieve, ranges it has stored cost next to nothing to answer
+	 * @param costScale   the factor applied to the calibrated costs, above 1 for a host slower than the reference
+	 * @param bitsetLimit the highest number the primality check looks up instead of testing it
+	 */
+	@Inject
+	public CostModel(Scheduler scheduler, SieveAlg sieveAlg, @Named("admission.costScale") double costScale,
+					 @Named("primality.bitsetLimit") long bitsetLimit) {
+		this.scheduler = scheduler;
+		this.sieveAlg = sieveAlg;
+		this.costScale = costScale;
+		this.bitsetLimit = bitsetLimit;
+	}
+
+	/**
+	 * @param method    the method of the request
+	 * @param from      the lower limit (inclusive) of the range worked on
+	 * @param to        the upper limit (inclusive) of the range worked on
+	 * @param nanosLeft the time left until the deadline of the request
+	 * @return the estimated cost of the request
+	 */
+	public Cost estimate(Method method, long from, long to, long nanosLeft) {
+		int threads = scheduler.getThreads();
+		double width = Math.max(0, to - from + 1);
+		double root = Math.sqrt((double) to);
+		//there are about 1 / ln(x) primes around x
+		double primes = width / Math.log(Math.max(to, 16));
+		double basePrimes = root / Math.log(Math.max(root, 16));
+
+		double nanos;
+		double bytes = primes * Primes.BYTES_PER_PRIME;
+		switch (method) {
+			case COUNT:
+				double counted = Math.pow(to, 0.75) + (from > 2 ? Math.pow(from, 0.75) : 0);
+				return new Cost(scale(COUNT_NANOS * counted / threads), (long) (16 * root), false);
+			case MILLER_RABIN:
+				nanos = MILLER_RABIN_NANOS * width / threads;
+				break;
+			case LUCAS_FILTER:
+				//the producers and the verifiers both share the threads, the slower of the two sets the pace
+				nanos = Math.max(LUCAS_NANOS * width / threads, DIVISION_NANOS * primes * basePrimes / threads);
+				bytes += basePrimes * Integer.BYTES;
+				break;
+			default:
+				if (sieveAlg.isStored(from, to)) {
+					//the primes are shared with the store, they only have to be written
+					nanos = 0;
+					bytes = 0;
+				} else {
+					nanos = (SIEVE_NANOS * width + SIEVE_BASE_NANOS * root) / threads;
+					bytes += basePrimes * Integer.BYTES;
+				}
+				break;
+		}
+		nanos = scale(nanos + WRITE_NANOS * primes);
+		if (nanos > nanosLeft && nanosLeft > 0) {
+			//only the prefix proven in time is held and answered
+			bytes = bytes * nanosLeft / nanos;
+			nanos = nanosLeft;
+		}
+		return new Cost((long) nanos, (long) bytes, true);
+	}
+
+	/**
+	 * @param numbers the numbers a primality request checks
+	 * @return the estimated cost of the request
+	 */
+	public Cost estimatePrimality(long[] numbers) {
+		long tested = Arrays.stream(numbers).filter(n -> n > bitsetLimit).count();
+		return new Cost(scale(PRIMALITY_NANOS * tested / scheduler.getThreads()), numbers.length, false);
+	}
+
+	/**
+	 * @param n the position of the prime asked for
+	 * @return the estimated cost of the request
+	 */
+	public Cost estimateNthPrime(long n) {
+		double ln = Math.log(Math.max(n, 16));
+		//the n-th prime is a little above n ln n
+		double x = n * (ln + Math.log(ln));
+		double nanos = (COUNT_NANOS * Math.pow(x, 0.75) + SIEVE_NANOS * NTH_PRIME_SIEVED) / scheduler.getThreads();
+		double bytes = 16 * Math.sqrt(x) + NTH_PRIME_SIEVED / Math.log(x) * Primes.BYTES_PER_PRIME;
+		return new Cost(scale(nanos), (long) bytes, false);
+	}
+
+	private long scale(double nanos) {
+		return (long) (nanos * costScale);
+	}
+}
@@ -2,97 +2,186 @@ package com.therdl.prime.calc.api;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import com.therdl.prime.calc.alg.MemoryGovernor;
+import com.therdl.prime.calc.alg.PartialResultException;
+import com.therdl.prime.calc.alg.Primes;
+import com.therdl.prime.calc.alg.count.PrimeCountAlg;
 import com.therdl.prime.calc.alg.lucas.LucasAlg;
+import com.therdl.prime.calc.alg.millerrabin.MillerRabinAlg;
 import com.therdl.prime.calc.alg.sieve.SieveAlg;
 import com.therdl.prime.calc.model.*;
-import flexjson.JSONDeserializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.ServletException;
-import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeoutException;
-import java.util.stream.Collectors;
 
 /**
  * This servlet receives the REST messages over HTTP and routes them to the appropriate algorithm.
  * Please see {@link RequestField} and {@link ResponseField} for the message format.
  * <p/>
+ * Before a request is handed over to the compute pool its cost is estimated by the {@link CostModel} and it goes
+ * through the {@link Admission}, a request the service cannot take on right now is answered straight away with a 429
+ * or a 503 and a Retry-After header.
+ * <p/>
+ * Every phase of a request, from reading the body to writing the response, is timed by a {@link PhaseTimer}, please
+ * see {@link Timings}.
+ * <p/>
+ * The primes answered are accounted for with the {@link MemoryGovernor} until the response is written, unless they are
+ * shared with the store of the sieve.
+ * <p/>
+ * The primes are answered in JSON unless the Accept header asks for one of the binary {@link Encoding}s.
+ * <p/>
+ * A batch of jobs is answered in a single response, the jobs asking for overlapping ranges of primes share a single
+ * run of the algorithm, please see {@link #processBatch(Request, List, long)}.
+ * <p/>
  * DispatcherServlet uses Guice to implement  the command pattern re Gang of 4 design patterns
  * see http://java.dzone.com/articles/design-patterns-command
  * Created by Alex on 22/04/2016.
  */
 @Singleton
-public class DispatcherServlet extends HttpServlet {
+public class DispatcherServlet extends JsonServlet {
+
+	private static final long serialVersionUID = 1L;
 
 	private static final Logger log = LoggerFactory.getLogger(DispatcherServlet.class);
 
 	private SieveAlg sieveAlg;
 	private LucasAlg lucasAlg;
+	private MillerRabinAlg millerRabinAlg;
+	private PrimeCountAlg primeCountAlg;
+	private CostModel costModel;
+	private Admission admission;
+	private Timings timings;
+	private MemoryGovernor governor;
 
 	@Inject
-	public DispatcherServlet(SieveAlg sieveAlg, LucasAlg lucasAlg) {
+	public DispatcherServlet(SieveAlg sieveAlg, LucasAlg lucasAlg, MillerRabinAlg millerRabinAlg,
+							 PrimeCountAlg primeCountAlg, CostModel costModel, Admission admission, Timings timings,
+							 MemoryGovernor governor, ComputeExecutor computeExecutor, Timeouts timeouts,
+							 Metrics metrics) {
+		super(computeExecutor, timeouts, metrics);
 		this.sieveAlg = sieveAlg;
 		this.lucasAlg = lucasAlg;
+		this.millerRabinAlg = millerRabinAlg;
+		this.primeCountAlg = primeCountAlg;
+		this.costModel = costModel;
+		this.admission = admission;
+		this.timings = timings;
+		this.governor = governor;
 	}
 
 	@Override
 	protected void doPost(HttpServletRequest httpRequest, HttpServletResponse httpResponse)
 			throws ServletException, IOException {
 		log.debug("DispatcherServlet doPost BEGIN");
+		long start = System.nanoTime();
+		PhaseTimer timer = timings.start();
 		Request request = null;
-		Response response = null;
 		Set<Error> errors = new HashSet<>();
 		try {
-			request = readRequest(httpRequest);
-
+			String payload = readPayload(httpRequest);
+			timer.mark(PhaseTimer.Phase.READ);
+			request = parseRequest(payload);
+			timer.mark(PhaseTimer.Phase.PARSE);
 		} catch (IOException | ClassCastException e) {
 			log.error(e.getMessage(), e);
 			errors.add(Error.BAD_REQUEST);
 		}
 
 		if (request != null) {
-			errors.addAll(validateRequest(request));
+			errors.addAll(request.isBatch() ? validateBatch(request) : validateRequest(request));
 		} else {
 			errors.add(Error.BAD_REQUEST);
 		}
+		timer.mark(PhaseTimer.Phase.VALIDATE);
 
-		if (request != null && errors.isEmpty()) {
-			response = processRequest(request, errors);
+		//a batch is always answered in JSON
+		Encoding encoding = Encoding.JSON;
+		if (errors.isEmpty() && !request.isBatch()) {
+			encoding = Encoding.negotiate(httpRequest.getHeader("Accept"), request.getTo());
+			if (encoding == null) {
+				errors.add(Error.NOT_ACCEPTABLE);
+			}
 		}
 
-		if (!errors.isEmpty()) {
-			response = createErrorResponse(errors);
+		if (errors.isEmpty() && request.isBatch()) {
+			Request valid = request;
+			long deadline = deadline(request);
+			//the jobs are checked once, the estimate and the processing go by the same errors
+			List<Set<Error>> jobErrors = validateJobs(request);
+			processAdmitted(httpRequest, httpResponse, admission, estimateBatch(request, jobErrors, deadline),
+					deadline, processErrors -> processBatch(valid, jobErrors, deadline), timer,
+					() -> timings.logIfSlow(timer, "jobs=" + valid.getJobs().size()));
+		} else if (errors.isEmpty()) {
+			Request valid = request;
+			long deadline = deadline(request);
+			Encoding accepted = encoding;
+			Method method = Method.valueOf(request.getContents().get(RequestField.METHOD.getLabel()).toString());
+			processAdmitted(httpRequest, httpResponse, admission, estimate(request, deadline), deadline,
+					processErrors -> encode(processRequest(valid, deadline, processErrors), valid, accepted),
+					timer,
+					() -> {
+						metrics.recordLatency(method, valid.getTo(), System.nanoTime() - start);
+						timings.logIfSlow(timer, "method=" + method + " from=" + valid.getFrom() + " to="
+								+ valid.getTo());
+					});
+		} else {
+			writeResponse(httpResponse, createErrorResponse(errors), timer);
 		}
-		writeResponse(httpResponse, response);
 
 		log.debug("DispatcherServlet doPost END");
 	}
 
-	public Response processRequest(Request request, Set<Error> errors) {
+	/**
+	 * Works out the response to a valid request. If the primes are not all found by the deadline the ones proven so
+	 * far are answered with the number up to which they are complete, please see {@link ResponseField#COMPLETE_UP_TO}.
+	 *
+	 * @param request  the valid request
+	 * @param deadline the {@link System#nanoTime()} by which the request has to be processed
+	 * @param errors   the errors the processing runs into
+	 * @return the response, null if there were errors
+	 */
+	public Response processRequest(Request request, long deadline, Set<Error> errors) {
 		Response response = null;
-		Integer limit = new Integer(request.getContents().get(RequestField.LIMIT.getLabel()).toString());
+		long from = request.getFrom();
+		long to = request.getTo();
 		Method method = Method.valueOf(request.getContents().get(RequestField.METHOD.getLabel()).toString());
-		SortedSet<Integer> primes = null;
 
 		try {
-			if (Method.SIEVE.equals(method)) {
-				primes = sieveAlg.process(limit);
-			} else if (Method.LUCAS_FILTER.equals(method)) {
-				primes = lucasAlg.process(limit);
+			if (Method.COUNT.equals(method)) {
+				return createRespose(request, ResponseField.COUNT, primeCountAlg.process(from, to, deadline));
+			}
+			if (request.isPaged()) {
+				response = createPage(request, method, to, deadline);
+				hold(response, method, request.getPageStart(), to);
+				return response;
 			}
 
-			response = createRespose(request, primes);
+			response = createRespose(request, ResponseField.PRIMES, process(method, from, to, deadline));
+			hold(response, method, from, to);
 
+		} catch (PartialResultException e) {
+			log.debug(e.getMessage());
+			response = createRespose(request, ResponseField.PRIMES, e.getPrimes());
+			response.getContents().put(ResponseField.COMPLETE_UP_TO.getLabel(), e.getCompleteUpTo());
+			hold(response, method, from, e.getCompleteUpTo());
 		} catch (TimeoutException e) {
 			log.error(e.getMessage(), e);
 			errors.add(Error.TIMEOUT_ERROR);
+		} catch (RejectedExecutionException e) {
+			//too many computations are waiting for memory already
+			log.debug(e.getMessage());
+			errors.add(Error.OVERLOADED);
+		} catch (InterruptedException e) {
+			//the client went away, the jobs left in a batch stop straight away too
+			Thread.currentThread().interrupt();
+			errors.add(Error.SERVER_ERROR);
 		} catch (Exception e) {
 			log.error(e.getMessage(), e);
 			errors.add(Error.SERVER_ERROR);
@@ -100,77 +189,358 @@ public class DispatcherServlet extends HttpServlet {
 		return response;
 	}
 
-	@Override
-	protected void doGet(HttpServletRequest httpRequest, HttpServletResponse httpResponse)
-			throws ServletException, IOException {
-		log.debug("DispatcherServlet -> doGet");
-		Set<Error> errors = new TreeSet<>();
-		errors.add(Error.GET_NOT_SUPPORTED);
-		Response response = createErrorResponse(errors);
-		writeResponse(httpResponse, response);
+	/**
+	 * Works out the response to a valid batch, a result for each job in the order given. The listing jobs of the same
+	 * method whose ranges overlap or touch share a single run of the algorithm over the span they cover together, up
+	 * to the largest limit, and each one is answered with the slice of the primes in its own range. Counts and pages
+	 * are worked out on their own. A job that is invalid or fails is answered with its errors, the other jobs are not
+	 * affected. The jobs share the deadline of the batch.
+	 *
+	 * @param batch     the valid batch
+	 * @param jobErrors the errors of each job, please see {@link #validateJobs(Request)}
+	 * @param deadline  the {@link System#nanoTime()} by which the batch has to be processed
+	 * @return the response holding the results
+	 */
+	public Response processBatch(Request batch, List<Set<Error>> jobErrors, long deadline) {
+		Response response = new Response();
+		List<Request> jobs = batch.getJobs();
+		List<Map<String, Object>> results = new ArrayList<>(Collections.nCopies(jobs.size(), null));
+		for (int i = 0; i < jobs.size(); i++) {
+			if (!jobErrors.get(i).isEmpty()) {
+				results.set(i, createErrorResponse(jobErrors.get(i)).getContents());
+			}
+		}
+		for (Span span : plan(jobs, valid(jobErrors))) {
+			if (span.alone) {
+				Request job = jobs.get(span.jobs.get(0));
+				Set<Error> processErrors = new HashSet<>();
+				Response jobResponse = processRequest(job, deadline, processErrors);
+				if (processErrors.isEmpty()) {
+					response.holdAll(jobResponse);
+				}
+				results.set(span.jobs.get(0), processErrors.isEmpty()
+						? jobResponse.getContents() : createErrorResponse(processErrors).getContents());
+			} else {
+				processSpan(span, jobs, results, response, deadline);
+			}
+		}
+		Map<String, Object> responseMap = new HashMap<>();
+		responseMap.put(ResponseField.RESULTS.getLabel(), results);
+		response.setContents(responseMap);
+		return response;
 	}
 
-	private Set<Error> validateRequest(Request request) {
-		Set<Error> errorSet = new HashSet<>();
-		Arrays.stream(RequestField.values()).forEach(
-				rf -> {
-					if (!rf.isValid(request.getContents().get(rf.getLabel()))) {
-						errorSet.add(rf.getError());
-					}
-				});
-		return errorSet;
+	//runs the algorithm once over the span and slices the primes of each of its jobs out of the result, the response of
+	//the batch holds the memory of the primes of the span
+	private void processSpan(Span span, List<Request> jobs, List<Map<String, Object>> results,
+							 Response batchResponse, long deadline) {
+		Primes primes = null;
+		long completeUpTo = span.to;
+		Set<Error> spanErrors = new HashSet<>();
+		try {
+			primes = process(span.method, span.from, span.to, deadline);
+		} catch (PartialResultException e) {
+			log.debug(e.getMessage());
+			primes = e.getPrimes();
+			completeUpTo = e.getCompleteUpTo();
+		} catch (TimeoutException e) {
+			log.error(e.getMessage(), e);
+			spanErrors.add(Error.TIMEOUT_ERROR);
+		} catch (RejectedExecutionException e) {
+			//too many computations are waiting for memory already
+			log.debug(e.getMessage());
+			spanErrors.add(Error.OVERLOADED);
+		} catch (InterruptedException e) {
+			//the client went away, the spans left stop straight away too
+			Thread.currentThread().interrupt();
+			spanErrors.add(Error.SERVER_ERROR);
+		} catch (Exception e) {
+			log.error(e.getMessage(), e);
+			spanErrors.add(Error.SERVER_ERROR);
+		}
+		if (primes != null) {
+			hold(batchResponse, primes, span.method, span.from, completeUpTo);
+		}
+		for (int i : span.jobs) {
+			Request job = jobs.get(i);
+			if (primes == null || job.getFrom() > completeUpTo) {
+				//nothing of the job was proven in time
+				Set<Error> jobErrors = spanErrors.isEmpty() ? EnumSet.of(Error.TIMEOUT_ERROR) : spanErrors;
+				results.set(i, createErrorResponse(jobErrors).getContents());
+				continue;
+			}
+			long to = Math.min(job.getTo(), completeUpTo);
+			Response response = createRespose(job, ResponseField.PRIMES, primes.range(job.getFrom(), to));
+			if (to < job.getTo()) {
+				response.getContents().put(ResponseField.COMPLETE_UP_TO.getLabel(), completeUpTo);
+			}
+			results.set(i, response.getContents());
+		}
 	}
 
-	private Request readRequest(HttpServletRequest httpRequest) throws IOException {
-		StringBuilder payload = new StringBuilder();
-		BufferedReader reader = httpRequest.getReader();
-		try {
-			String line;
-			while ((line = reader.readLine()) != null) {
-				payload.append(line).append('\n');
+	/**
+	 * The valid jobs of a batch grouped by what is worked out for them: a span of the listing jobs of a method
+	 * covering overlapping ranges, or a count or a page on its own. The spans are never wider than a single request
+	 * can be.
+	 *
+	 * @param jobs  the jobs of the batch
+	 * @param valid the indexes of the valid jobs
+	 */
+	private List<Span> plan(List<Request> jobs, List<Integer> valid) {
+		List<Span> spans = new ArrayList<>();
+		List<Integer> listing = new ArrayList<>();
+		for (int i : valid) {
+			Request job = jobs.get(i);
+			Method method = Method.valueOf(job.getContents().get(RequestField.METHOD.getLabel()).toString());
+			if (Method.COUNT.equals(method) || job.isPaged()) {
+				Span alone = new Span(method, job.getFrom(), job.getTo(), true);
+				alone.jobs.add(i);
+				spans.add(alone);
+			} else {
+				listing.add(i);
+			}
+		}
+		listing.sort(Comparator.comparing((Integer i) -> jobs.get(i).getContents().get(RequestField.METHOD.getLabel())
+				.toString()).thenComparingLong(i -> jobs.get(i).getFrom()));
+		Span span = null;
+		for (int i : listing) {
+			Request job = jobs.get(i);
+			Method method = Method.valueOf(job.getContents().get(RequestField.METHOD.getLabel()).toString());
+			long from = job.getFrom();
+			long to = job.getTo();
+			if (span == null || span.method != method || from > span.to + 1
+					|| Math.max(span.to, to) - span.from > RequestField.MAX_RANGE) {
+				span = new Span(method, from, to, false);
+				spans.add(span);
 			}
-		} finally {
-			reader.close();
+			span.to = Math.max(span.to, to);
+			span.jobs.add(i);
 		}
+		return spans;
+	}
 
-		Map<String, Object> requestContents;
+	/**
+	 * Part of a batch worked out in one go, please see {@link #plan(List, List)}
+	 */
+	private static class Span {
+		private final Method method;
+		private final long from;
+		private long to;
+		private final boolean alone;
+		//the indexes of the jobs answered from the span
+		private final List<Integer> jobs = new ArrayList<>();
 
-		requestContents = new JSONDeserializer<Map<String, Object>>().deserialize(payload.toString());
+		private Span(Method method, long from, long to, boolean alone) {
+			this.method = method;
+			this.from = from;
+			this.to = to;
+			this.alone = alone;
+		}
+	}
 
+	/**
+	 * Answers the primes of the response in the encoding negotiated, the counts and the errors are always answered in
+	 * JSON. The primes of a page or of a partial result only cover part of the range, up to the next cursor or to the
+	 * number they are complete up to.
+	 */
+	private Response encode(Response response, Request request, Encoding encoding) {
+		if (response == null || !encoding.isBinary()
+				|| !response.getContents().containsKey(ResponseField.PRIMES.getLabel())) {
+			return response;
+		}
+		Map<String, Object> contents = response.getContents();
+		long from = request.isPaged() ? request.getPageStart() : request.getFrom();
+		long to = request.getTo();
+		if (contents.containsKey(ResponseField.COMPLETE_UP_TO.getLabel())) {
+			to = ((Number) contents.get(ResponseField.COMPLETE_UP_TO.getLabel())).longValue();
+		} else if (contents.containsKey(ResponseField.NEXT_CURSOR.getLabel())) {
+			to = Cursor.decode(contents.get(ResponseField.NEXT_CURSOR.getLabel()).toString()) - 1;
+		}
+		response.setEncoding(encoding, from, to);
+		return response;
+	}
 
-		return new Request(requestContents);
+	//accounts for the primes of the response until it is written
+	private void hold(Response response, Method method, long from, long to) {
+		hold(response, (Primes) response.getContents().get(ResponseField.PRIMES.getLabel()), method, from, to);
 	}
 
-	private Response createRespose(Request request, SortedSet<Integer> primes) {
-		Response response = new Response();
-		Map<String, Object> responseMap = new HashMap<>();
+	//the primes sliced from the store of the sieve are already held there
+	private void hold(Response response, Primes primes, Method method, long from, long to) {
+		if (!Method.SIEVE.equals(method) || !sieveAlg.isStored(from, to)) {
+			response.hold(governor.account((long) primes.size() * Primes.BYTES_PER_PRIME));
+		}
+	}
 
-		responseMap.put(ResponseField.LIMIT.getLabel(), request.getContents().get(RequestField.LIMIT.getLabel()));
-		responseMap.put(ResponseField.PRIMES.getLabel(), primes);
-		response.setContents(responseMap);
-		return response;
+	private Primes process(Method method, long from, long to, long deadline)
+			throws TimeoutException, InterruptedException {
+		if (Method.LUCAS_FILTER.equals(method)) {
+			return lucasAlg.process(from, to, deadline);
+		} else if (Method.MILLER_RABIN.equals(method)) {
+			return millerRabinAlg.process(from, to, deadline);
+		}
+		return sieveAlg.process(from, to, deadline);
 	}
 
-	private Response createErrorResponse(Set<Error> errors) {
-		Response response = new Response();
-		if (errors.contains(Error.SERVER_ERROR)) {
-			response.setStatusCode(Response.SERVER_ERROR);
-		} else {
-			response.setStatusCode(Response.BAD_REQUEST);
+	/**
+	 * Only the windows the page covers are worked on, each sized to hold the primes still missing from the page going
+	 * by their density around the start. The next page starts right after the last prime of this one and its position
+	 * is handed back in the cursor, unless the end of the range was reached. A page cut short by the deadline holds
+	 * the primes proven so far, with the cursor following them.
+	 */
+	private Response createPage(Request request, Method method, long to, long deadline)
+			throws TimeoutException, InterruptedException {
+		int pageSize = request.getPageSize();
+		Primes page = new Primes();
+		long next = request.getPageStart();
+		boolean timedOut = false;
+		while (!timedOut && next <= to && page.size() < pageSize) {
+			int missing = pageSize - page.size();
+			long width = windowWidth(next, missing);
+			long end = to - next < width ? to : next + width - 1;
+			Primes window;
+			try {
+				window = process(method, next, end, deadline);
+			} catch (PartialResultException e) {
+				window = e.getPrimes();
+				end = e.getCompleteUpTo();
+				timedOut = true;
+			} catch (TimeoutException e) {
+				//nothing to answer with unless an earlier window got done
+				if (next == request.getPageStart()) {
+					throw e;
+				}
+				timedOut = true;
+				break;
+			}
+			if (window.size() > missing) {
+				end = window.get(missing - 1);
+				window = window.range(next, end);
+			}
+			page.addAll(window);
+			next = end + 1;
+		}
+		Response response = createRespose(request, ResponseField.PRIMES, page);
+		if (next <= to) {
+			response.getContents().put(ResponseField.NEXT_CURSOR.getLabel(), Cursor.encode(next));
+		}
+		if (timedOut) {
+			response.getContents().put(ResponseField.COMPLETE_UP_TO.getLabel(), next - 1);
 		}
-		Map<String, Object> respContents = new HashMap<>();
-		respContents.put(ResponseField.ERROR.getLabel(),
-				errors.stream().map(Error::getLabel).collect(Collectors.toList()));
-		response.setContents(respContents);
 		return response;
 	}
 
-	private void writeResponse(HttpServletResponse httpResponse, Response response) throws IOException {
-		httpResponse.setStatus(response.getStatusCode());
+	//the cost of the part of the range the request works on, a page only covers the windows it needs
+	private Cost estimate(Request request, long deadline) {
+		Method method = Method.valueOf(request.getContents().get(RequestField.METHOD.getLabel()).toString());
+		long from = request.getFrom();
+		long to = request.getTo();
+		if (request.isPaged() && !Method.COUNT.equals(method)) {
+			from = request.getPageStart();
+			to = Math.min(to, from + windowWidth(from, request.getPageSize()) - 1);
+		}
+		return costModel.estimate(method, from, to, deadline - System.nanoTime());
+	}
+
+	//the cost of the spans and the counts and pages of a batch, the jobs sharing a span only cost it once
+	private Cost estimateBatch(Request batch, List<Set<Error>> jobErrors, long deadline) {
+		List<Request> jobs = batch.getJobs();
+		Cost cost = new Cost(0, 0, true);
+		for (Span span : plan(jobs, valid(jobErrors))) {
+			cost = cost.plus(span.alone ? estimate(jobs.get(span.jobs.get(0)), deadline)
+					: costModel.estimate(span.method, span.from, span.to, deadline - System.nanoTime()));
+		}
+		return cost;
+	}
 
-		PrintWriter out = httpResponse.getWriter();
-		out.println(response.getPayload());
-		out.flush();
-		out.close();
+	//a window a little wider than the one holding the given number of primes, there are about 1 / ln(x) around x
+	private static long windowWidth(long start, int primes) {
+		return (long) (primes * Math.log(Math.max(start, 16)) * 1.1) + 1024;
+	}
+
+	//the indexes of the jobs without errors
+	private static List<Integer> valid(List<Set<Error>> jobErrors) {
+		List<Integer> valid = new ArrayList<>();
+		for (int i = 0; i < jobErrors.size(); i++) {
+			if (jobErrors.get(i).isEmpty()) {
+				valid.add(i);
+			}
+		}
+		return valid;
+	}
+
+	/**
+	 * @param batch the batch to check
+	 * @return the errors of the batch as a whole, the jobs are checked on their own by {@link #validateJobs(Request)}
+	 */
+	Set<Error> validateBatch(Request batch) {
+		Set<Error> errorSet = new HashSet<>();
+		if (!RequestField.JOBS.isValid(batch.getContents().get(RequestField.JOBS.getLabel()))) {
+			errorSet.add(RequestField.JOBS.getError());
+		}
+		if (!isValidTimeout(batch)) {
+			errorSet.add(RequestField.TIMEOUT_MS.getError());
+		}
+		return errorSet;
+	}
+
+	/**
+	 * @param batch a valid batch
+	 * @return the errors of each job in the order given, none for a valid job
+	 */
+	List<Set<Error>> validateJobs(Request batch) {
+		List<Set<Error>> jobErrors = new ArrayList<>();
+		for (Request job : batch.getJobs()) {
+			jobErrors.add(validateRequest(job));
+		}
+		return jobErrors;
+	}
+
+	Set<Error> validateRequest(Request request) {
+		Set<Error> errorSet = new HashSet<>();
+		Arrays.stream(RequestField.values()).forEach(
+				rf -> {
+					Object value = request.getContents().get(rf.getLabel());
+					if (value == null && !rf.isRequired(request.getContents())) {
+						return;
+					}
+					if (!rf.isValid(value)) {
+						errorSet.add(rf.getError());
+					}
+				});
+		//the range bounds are valid on their own, check they make sense together
+		if (errorSet.isEmpty()) {
+			long from = request.getFrom();
+			long to = request.getTo();
+			//counting does not list the primes and paging lists a page at a time so their ranges are not narrowed
+			boolean count = Method.COUNT.name().equals(request.getContents().get(RequestField.METHOD.getLabel()));
+			boolean wide = count || request.isPaged();
+			if (from > to || (!wide && to - from > RequestField.MAX_RANGE)) {
+				errorSet.add(Error.BAD_RANGE);
+			} else if (count && to > PrimeCountAlg.MAX_LIMIT) {
+				errorSet.add(Error.BAD_COUNT);
+			} else if (request.isPaged() && request.getPageStart() < from) {
+				errorSet.add(Error.BAD_CURSOR);
+			}
+		}
+		return errorSet;
+	}
+
+	private Response createRespose(Request request, ResponseField field, Object result) {
+		Response response = new Response();
+		Map<String, Object> responseMap = new HashMap<>();
+
+		if (request.getContents().containsKey(RequestField.LIMIT.getLabel())) {
+			responseMap.put(ResponseField.LIMIT.getLabel(), request.getContents().get(RequestField.LIMIT.getLabel()));
+		}
+		if (request.getContents().containsKey(RequestField.FROM.getLabel())) {
+			responseMap.put(ResponseField.FROM.getLabel(), request.getContents().get(RequestField.FROM.getLabel()));
+		}
+		if (request.getContents().containsKey(RequestField.TO.getLabel())) {
+			responseMap.put(ResponseField.TO.getLabel(), request.getContents().get(RequestField.TO.getLabel()));
+		}
+		responseMap.put(field.getLabel(), result);
+		response.setContents(responseMap);
+		return response;
 	}
 }
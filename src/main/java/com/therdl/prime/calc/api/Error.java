@@ -1,6 +1,10 @@
 package com.therdl.prime.calc.api;
 
+import com.therdl.prime.calc.alg.count.NthPrimeAlg;
+import com.therdl.prime.calc.alg.count.PrimeCountAlg;
+import com.therdl.prime.calc.model.Encoding;
 import com.therdl.prime.calc.model.Method;
+import com.therdl.prime.calc.model.RequestField;
 
 /**
  * Here reside all the errors that can be returned by the prime calc service
@@ -9,13 +13,29 @@ import com.therdl.prime.calc.model.Method;
 public enum Error {
 
 	SERVER_ERROR("Server side error, please chastise the developer :)"),
-	TIMEOUT_ERROR("Processing timed out after 5 seconds, please lower the limit or run on a more powerful machine"),
+	TIMEOUT_ERROR("Processing timed out, please raise the timeoutMs, lower the limit or run on a more powerful machine"),
 	BAD_REQUEST("The request format must be JSON and specify a method and a limit"),
 	BAD_METHOD("The method is required in the request and must be one of: "
 			+ Method.printMethods() + " with no whitespace"),
 	BAD_LIMIT("The limit is required in the request and  must be a positive integer between 0 and "
 			+ (Integer.MAX_VALUE - 5)
 			+ " written as a string with no whitespace"),
+	BAD_RANGE("The from and to must be positive integers between 0 and " + RequestField.MAX_TO
+			+ " with from not above to and at most " + RequestField.MAX_RANGE + " apart"),
+	BAD_NUMBERS("The numbers are required in the request and must be a list of 1 to " + RequestField.MAX_NUMBERS
+			+ " positive integers between 0 and " + Long.MAX_VALUE),
+	BAD_N("The n is required in the request and must be a positive integer between 1 and " + NthPrimeAlg.MAX_N),
+	BAD_PAGE_SIZE("The pageSize is required with a cursor and must be a positive integer between 1 and "
+			+ RequestField.MAX_PAGE_SIZE),
+	BAD_CURSOR("The cursor must be the nextCursor of a previous page of the same range"),
+	BAD_COUNT("The COUNT method accepts an upper limit of at most " + PrimeCountAlg.MAX_LIMIT
+			+ " with no limit on the width of the range"),
+	TOO_BUSY("The service is too busy to answer in time, please retry after the Retry-After seconds"),
+	OVERLOADED("The service does not have the memory to answer right now, please retry after the Retry-After seconds"),
+	NOT_ACCEPTABLE("The Accept header must allow application/json or one of the binary encodings, "
+			+ Encoding.INT32.getContentType() + " only for a to of at most " + Integer.MAX_VALUE),
+	BAD_TIMEOUT("The timeoutMs must be a positive integer, it is capped by the server maximum"),
+	BAD_JOBS("The jobs must be a list of 1 to " + RequestField.MAX_JOBS + " prime calc requests"),
 	GET_NOT_SUPPORTED("The HTTP GET method is not supported, please use POST");
 
 	private String msg;
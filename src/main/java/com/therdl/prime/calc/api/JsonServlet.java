@@ -0,0 +1,321 @@
+package com.therdl.prime.calc.api;
+
+import com.therdl.prime.calc.alg.Primes;
+import com.therdl.prime.calc.model.Request;
+import com.therdl.prime.calc.model.RequestField;
+import com.therdl.prime.calc.model.Response;
+import com.therdl.prime.calc.model.ResponseField;
+import flexjson.JSONDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The plumbing shared by the servlets of the prime calc service: reading a JSON request, handing it over to the
+ * {@link ComputeExecutor}, building the error response and streaming the JSON response back. Only POST is supported.
+ */
+public abstract class JsonServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger log = LoggerFactory.getLogger(JsonServlet.class);
+
+	private final ComputeExecutor computeExecutor;
+
+	private final Timeouts timeouts;
+
+	protected final Metrics metrics;
+
+	protected JsonServlet(ComputeExecutor computeExecutor, Timeouts timeouts, Metrics metrics) {
+		this.computeExecutor = computeExecutor;
+		this.timeouts = timeouts;
+		this.metrics = metrics;
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest httpRequest, HttpServletResponse httpResponse)
+			throws ServletException, IOException {
+		log.debug("{} -> doGet", getClass().getSimpleName());
+		Set<Error> errors = new TreeSet<>();
+		errors.add(Error.GET_NOT_SUPPORTED);
+		Response response = createErrorResponse(errors);
+		writeResponse(httpResponse, response);
+	}
+
+	protected Request readRequest(HttpServletRequest httpRequest) throws IOException {
+		return parseRequest(readPayload(httpRequest));
+	}
+
+	/**
+	 * @param httpRequest the request being served
+	 * @return the body of the request
+	 * @throws IOException if the body cannot be read
+	 */
+	protected String readPayload(HttpServletRequest httpRequest) throws IOException {
+		StringBuilder payload = new StringBuilder();
+		BufferedReader reader = httpRequest.getReader();
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				payload.append(line).append('\n');
+			}
+		} finally {
+			reader.close();
+		}
+		return payload.toString();
+	}
+
+	/**
+	 * @param payload the body of the request
+	 * @return the request the JSON body holds
+	 * @throws ClassCastException if the body is not a JSON object
+	 */
+	protected Request parseRequest(String payload) {
+		Map<String, Object> requestContents = new JSONDeserializer<Map<String, Object>>().deserialize(payload);
+		return new Request(requestContents);
+	}
+
+	/**
+	 * @param request the request to check
+	 * @return true if the request does not ask for a timeout or asks for a valid one
+	 */
+	protected boolean isValidTimeout(Request request) {
+		Object timeoutMs = request.getContents().get(RequestField.TIMEOUT_MS.getLabel());
+		return timeoutMs == null || RequestField.TIMEOUT_MS.isValid(timeoutMs);
+	}
+
+	/**
+	 * @param request a valid request, just received
+	 * @return the {@link System#nanoTime()} by which the request has to be processed, see {@link Timeouts}
+	 */
+	protected long deadline(Request request) {
+		return timeouts.deadline(request);
+	}
+
+	/**
+	 * Admits a valid request with the {@link Admission} and processes it asynchronously, see
+	 * {@link #processAsync(HttpServletRequest, Function, PhaseTimer, Runnable)}. A request the service cannot take on
+	 * right now is answered straight away with the error it was shed with and a Retry-After header
+	 *
+	 * @param httpRequest  the request being served
+	 * @param httpResponse the response being served
+	 * @param admission    the admission of the service
+	 * @param cost         the estimated cost of the request
+	 * @param deadline     the {@link System#nanoTime()} by which the request has to be processed
+	 * @param processor    works out the response from the request, adding to the given errors instead if it fails
+	 * @param timer        the timer of the request, marked up to the validation
+	 * @param done         called once the request is admitted and its response is complete or its client went away
+	 * @throws IOException if a shed request cannot be answered
+	 */
+	protected void processAdmitted(HttpServletRequest httpRequest, HttpServletResponse httpResponse,
+								   Admission admission, Cost cost, long deadline,
+								   Function<Set<Error>, Response> processor, PhaseTimer timer, Runnable done)
+			throws IOException {
+		Admission.Ticket ticket;
+		try {
+			ticket = admission.admit(cost, deadline);
+		} catch (RejectedException e) {
+			log.debug(e.getMessage());
+			timer.mark(PhaseTimer.Phase.ADMIT);
+			Set<Error> errors = new HashSet<>();
+			errors.add(e.getError());
+			Response response = createErrorResponse(errors);
+			response.setRetryAfter(e.getRetryAfter());
+			writeResponse(httpResponse, response, timer);
+			return;
+		}
+		timer.mark(PhaseTimer.Phase.ADMIT);
+		processAsync(httpRequest, processor, timer, () -> {
+			ticket.close();
+			done.run();
+		});
+	}
+
+	/**
+	 * Processes a valid request asynchronously: the Jetty thread returns straight away while the response is worked
+	 * out, written and completed on the compute pool. The algorithms have their own deadlines so the async context
+	 * is not timed out on its own. If the client goes away the compute thread is interrupted, and the algorithm
+	 * cancels its workers on the way out. A request finding the compute queue full is answered with
+	 * {@link Error#TOO_BUSY} straight away. The memory the primes of the response hold is released once it is
+	 * written. The time spent waiting for a compute thread, working out the response and writing it is marked on the
+	 * timer
+	 *
+	 * @param httpRequest the request being served
+	 * @param processor   works out the response from the request, adding to the given errors instead if it fails
+	 * @param timer       the timer of the request, marked up to admission
+	 * @param done        called once, when the response is complete or the client went away, whichever comes first
+	 */
+	protected void processAsync(HttpServletRequest httpRequest, Function<Set<Error>, Response> processor,
+								PhaseTimer timer, Runnable done) {
+		AsyncContext async = httpRequest.startAsync();
+		async.setTimeout(0);
+		metrics.requestStarted();
+		AtomicBoolean finished = new AtomicBoolean();
+		Runnable finish = () -> {
+			if (finished.compareAndSet(false, true)) {
+				metrics.requestDone();
+				done.run();
+			}
+		};
+		FutureTask<Void> task = new FutureTask<>(() -> {
+			timer.mark(PhaseTimer.Phase.QUEUE);
+			Set<Error> errors = new HashSet<>();
+			Response response = processor.apply(errors);
+			if (!errors.isEmpty()) {
+				if (response != null) {
+					response.release();
+				}
+				response = createErrorResponse(errors);
+			}
+			timer.mark(PhaseTimer.Phase.COMPUTE);
+			complete(async, response, timer, finish);
+		}, null);
+		//registered before the task is queued, so neither an early client error nor the completion is missed
+		async.addListener(new AsyncListener() {
+			@Override
+			public void onComplete(AsyncEvent event) {
+			}
+
+			@Override
+			public void onTimeout(AsyncEvent event) {
+			}
+
+			@Override
+			public void onError(AsyncEvent event) {
+				log.debug("The client went away, cancelling the processing");
+				//the task may be cancelled before it starts
+				task.cancel(true);
+				finish.run();
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) {
+			}
+		});
+		try {
+			computeExecutor.execute(task);
+		} catch (RejectedExecutionException e) {
+			log.debug(e.getMessage());
+			Set<Error> errors = new HashSet<>();
+			errors.add(Error.TOO_BUSY);
+			complete(async, createErrorResponse(errors), timer, finish);
+		}
+	}
+
+	//writes the response, releases the memory it held and completes the request, whatever happens
+	private void complete(AsyncContext async, Response response, PhaseTimer timer, Runnable finish) {
+		try {
+			writeResponse((HttpServletResponse) async.getResponse(), response, timer);
+		} catch (IOException e) {
+			log.error(e.getMessage(), e);
+		} finally {
+			response.release();
+			async.complete();
+			timer.mark(PhaseTimer.Phase.WRITE);
+			finish.run();
+		}
+	}
+
+	protected Response createErrorResponse(Set<Error> errors) {
+		metrics.countErrors(errors);
+		Response response = new Response();
+		if (errors.contains(Error.SERVER_ERROR)) {
+			response.setStatusCode(Response.SERVER_ERROR);
+		} else if (errors.contains(Error.OVERLOADED)) {
+			response.setStatusCode(Response.SERVICE_UNAVAILABLE);
+			response.setRetryAfter(1);
+		} else if (errors.contains(Error.TOO_BUSY)) {
+			response.setStatusCode(Response.TOO_MANY_REQUESTS);
+			response.setRetryAfter(1);
+		} else if (errors.contains(Error.NOT_ACCEPTABLE)) {
+			response.setStatusCode(Response.NOT_ACCEPTABLE);
+		} else {
+			response.setStatusCode(Response.BAD_REQUEST);
+		}
+		Map<String, Object> respContents = new HashMap<>();
+		respContents.put(ResponseField.ERROR.getLabel(),
+				errors.stream().map(Error::getLabel).collect(Collectors.toList()));
+		response.setContents(respContents);
+		return response;
+	}
+
+	protected void writeResponse(HttpServletResponse httpResponse, Response response) throws IOException {
+		writeResponse(httpResponse, response, PhaseTimer.OFF);
+	}
+
+	/**
+	 * Writes the response, with the phases marked so far in a Server-Timing header if the timer answers them. A
+	 * response in a binary encoding only holds the primes in its body, its other fields are answered in X- headers
+	 * named after them, e.g. X-Complete-Up-To, along with the number of primes and the range they were looked for in
+	 *
+	 * @param httpResponse the response being served
+	 * @param response     the response to write
+	 * @param timer        the timer of the request
+	 * @throws IOException if the response cannot be written
+	 */
+	protected void writeResponse(HttpServletResponse httpResponse, Response response, PhaseTimer timer)
+			throws IOException {
+		httpResponse.setStatus(response.getStatusCode());
+		if (timer.isHeader()) {
+			httpResponse.setHeader("Server-Timing", timer.toServerTiming());
+		}
+		if (response.getEncoding().isBinary()) {
+			httpResponse.setContentType(response.getEncoding().getContentType());
+			writeHeaders(httpResponse, response);
+		} else {
+			httpResponse.setContentType("application/json;charset=UTF-8");
+		}
+		if (response.getRetryAfter() > 0) {
+			httpResponse.setHeader("Retry-After", Long.toString(response.getRetryAfter()));
+		}
+
+		OutputStream out = httpResponse.getOutputStream();
+		response.writePayload(out);
+		out.close();
+	}
+
+	private static void writeHeaders(HttpServletResponse httpResponse, Response response) {
+		Primes primes = (Primes) response.getContents().get(ResponseField.PRIMES.getLabel());
+		httpResponse.setHeader("X-Primes-Count", Integer.toString(primes.size()));
+		httpResponse.setHeader("X-Primes-From", Long.toString(response.getCoveredFrom()));
+		httpResponse.setHeader("X-Primes-To", Long.toString(response.getCoveredTo()));
+		response.getContents().forEach((label, value) -> {
+			if (!ResponseField.PRIMES.getLabel().equals(label)) {
+				httpResponse.setHeader(headerName(label), value.toString());
+			}
+		});
+	}
+
+	//completeUpTo -> X-Complete-Up-To
+	static String headerName(String label) {
+		StringBuilder name = new StringBuilder("X-").append(Character.toUpperCase(label.charAt(0)));
+		for (int i = 1; i < label.length(); i++) {
+			char c = label.charAt(i);
+			if (Character.isUpperCase(c)) {
+				name.append('-');
+			}
+			name.append(c);
+		}
+		return name.toString();
+	}
+}
@@ -0,0 +1,110 @@
+package com.therdl.prime.calc.api;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records latencies in microseconds into log-linear buckets, the way HdrHistogram does, so the tail percentiles can
+ * be read back without keeping every value. The values below 64 get a bucket each, every power of two above is split
+ * into 32 buckets, which keeps a percentile within about 3% of the value it stands for. Recording never locks.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	//the values are exact below 2 * SUB_BUCKETS, that is below 2 ^ EXACT_BITS
+	private static final int EXACT_BITS = SUB_BUCKET_BITS + 1;
+
+	//the values are kept apart up to 2 ^ 40 microseconds, 12 days, larger ones share an extra last bucket
+	private static final int MAX_BITS = 40;
+
+	private static final int BUCKETS = 2 * SUB_BUCKETS + (MAX_BITS - EXACT_BITS) * SUB_BUCKETS + 1;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param micros the latency to record, negative values count as 0
+	 */
+	public void record(long micros) {
+		long value = Math.max(0, micros);
+		counts.incrementAndGet(index(value));
+		count.increment();
+		sum.add(value);
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 * @return the number of latencies recorded
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the mean latency in microseconds, 0 if none was recorded
+	 */
+	public long getMean() {
+		long recorded = count.sum();
+		return recorded == 0 ? 0 : sum.sum() / recorded;
+	}
+
+	/**
+	 * @return the highest latency recorded in microseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the latency in microseconds the given percentage of the recorded ones are at or below, going by the
+	 * highest value of their bucket, 0 if none was recorded
+	 */
+	public long getPercentile(double percentile) {
+		long recorded = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			recorded += counts.get(i);
+		}
+		long rank = Math.max(1, (long) Math.ceil(recorded * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS && recorded > 0; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(highestValue(i), getMax());
+			}
+		}
+		return 0;
+	}
+
+	private static int index(long value) {
+		int bits = 64 - Long.numberOfLeadingZeros(value);
+		if (bits <= EXACT_BITS) {
+			return (int) value;
+		}
+		if (bits > MAX_BITS) {
+			return BUCKETS - 1;
+		}
+		int shift = bits - EXACT_BITS;
+		//the leading bit picks the power of two, the next SUB_BUCKET_BITS the bucket within it
+		int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+		return 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + subBucket;
+	}
+
+	private static long highestValue(int index) {
+		if (index < 2 * SUB_BUCKETS) {
+			return index;
+		}
+		if (index == BUCKETS - 1) {
+			return Long.MAX_VALUE;
+		}
+		int shift = (index - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+		long subBucket = (index - 2 * SUB_BUCKETS) % SUB_BUCKETS;
+		return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+	}
+}
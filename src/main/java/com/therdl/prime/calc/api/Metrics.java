@@ -0,0 +1,150 @@
+package com.therdl.prime.calc.api;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.therdl.prime.calc.alg.MemoryGovernor;
+import com.therdl.prime.calc.model.Method;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The in-process metrics of the service, served at /v1/metrics by the {@link MetricsServlet}:
+ * <ul>
+ * <li>a {@link LatencyHistogram} of the prime calc requests per {@link Method} and decade of the upper limit, the
+ * decade d holding the limits from 10^d up to 10^(d+1) - 1, and of the {@link #IS_PRIME} and {@link #NTH_PRIME}
+ * requests per decade of the largest number checked and of n</li>
+ * <li>a counter per {@link Error} answered</li>
+ * <li>gauges of the requests in flight, the tasks waiting for the {@link ComputeExecutor} and the memory reserved
+ * with the {@link MemoryGovernor} by the sieves and result buffers in flight</li>
+ * </ul>
+ * Everything is kept since the service started.
+ */
+@Singleton
+public class Metrics {
+
+	/**
+	 * The latencies of the primality checks are kept under this name next to the methods
+	 */
+	public static final String IS_PRIME = "IS_PRIME";
+
+	/**
+	 * The latencies of the n-th prime lookups are kept under this name next to the methods
+	 */
+	public static final String NTH_PRIME = "NTH_PRIME";
+
+	private final ComputeExecutor computeExecutor;
+
+	private final MemoryGovernor governor;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final Map<Error, LongAdder> errors = new EnumMap<>(Error.class);
+
+	private final ConcurrentMap<String, ConcurrentMap<Integer, LatencyHistogram>> latencies =
+			new ConcurrentHashMap<>();
+
+	@Inject
+	public Metrics(ComputeExecutor computeExecutor, MemoryGovernor governor) {
+		this.computeExecutor = computeExecutor;
+		this.governor = governor;
+		//filled up front so the maps are only ever read afterwards
+		for (Error error : Error.values()) {
+			errors.put(error, new LongAdder());
+		}
+	}
+
+	/**
+	 * Counts a request handed to the compute pool, until {@link #requestDone()}
+	 */
+	public void requestStarted() {
+		inFlight.incrementAndGet();
+	}
+
+	/**
+	 * Counts a request off once its response is complete or its client went away
+	 */
+	public void requestDone() {
+		inFlight.decrementAndGet();
+	}
+
+	/**
+	 * @param errors the errors a response was answered with
+	 */
+	public void countErrors(Set<Error> errors) {
+		errors.forEach(error -> this.errors.get(error).increment());
+	}
+
+	/**
+	 * @param method the method of the prime calc request
+	 * @param to     the upper limit (inclusive) of the request
+	 * @param nanos  the time from reading the request to completing the response
+	 */
+	public void recordLatency(Method method, long to, long nanos) {
+		recordLatency(method.name(), to, nanos);
+	}
+
+	/**
+	 * @param name      the name the latencies are kept under, a method name, {@link #IS_PRIME} or {@link #NTH_PRIME}
+	 * @param magnitude the number the decade is taken from
+	 * @param nanos     the time from reading the request to completing the response
+	 */
+	public void recordLatency(String name, long magnitude, long nanos) {
+		latencies.computeIfAbsent(name, n -> new ConcurrentHashMap<>())
+				.computeIfAbsent(decade(magnitude), d -> new LatencyHistogram())
+				.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+
+	/**
+	 * @return the metrics as they are now, ready to be answered
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> snapshot = new LinkedHashMap<>();
+		snapshot.put("inFlight", inFlight.get());
+		snapshot.put("computeQueueDepth", computeExecutor.getQueueDepth());
+		snapshot.put("memoryReservedBytes", governor.getReserved());
+		snapshot.put("memoryHeadroomBytes", governor.getHeadroom());
+
+		Map<String, Long> errorCounts = new TreeMap<>();
+		errors.forEach((error, count) -> errorCounts.put(error.name(), count.sum()));
+		snapshot.put("errors", errorCounts);
+
+		Map<String, Object> methods = new TreeMap<>();
+		latencies.forEach((name, decades) -> {
+			Map<String, Object> histograms = new TreeMap<>();
+			decades.forEach((decade, histogram) -> histograms.put(String.format("1e%02d", decade), summary(histogram)));
+			methods.put(name, histograms);
+		});
+		snapshot.put("latency", methods);
+		return snapshot;
+	}
+
+	private static Map<String, Long> summary(LatencyHistogram histogram) {
+		Map<String, Long> summary = new LinkedHashMap<>();
+		summary.put("count", histogram.getCount());
+		summary.put("meanUs", histogram.getMean());
+		summary.put("p50Us", histogram.getPercentile(50));
+		summary.put("p90Us", histogram.getPercentile(90));
+		summary.put("p99Us", histogram.getPercentile(99));
+		summary.put("p999Us", histogram.getPercentile(99.9));
+		summary.put("maxUs", histogram.getMax());
+		return summary;
+	}
+
+	//the number of digits less one, 0 and 1 to 9 share decade 0
+	private static int decade(long to) {
+		int decade = 0;
+		for (long bound = 10; decade < 18 && to >= bound; bound *= 10) {
+			decade++;
+		}
+		return decade;
+	}
+}
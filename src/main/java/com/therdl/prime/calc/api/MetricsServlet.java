@@ -0,0 +1,38 @@
+package com.therdl.prime.calc.api;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.therdl.prime.calc.model.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * This servlet answers a GET with the {@link Metrics} of the service as they are now, nothing is calculated so it is
+ * answered straight away on the Jetty thread.
+ */
+@Singleton
+public class MetricsServlet extends JsonServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger log = LoggerFactory.getLogger(MetricsServlet.class);
+
+	@Inject
+	public MetricsServlet(ComputeExecutor computeExecutor, Timeouts timeouts, Metrics metrics) {
+		super(computeExecutor, timeouts, metrics);
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest httpRequest, HttpServletResponse httpResponse)
+			throws ServletException, IOException {
+		log.debug("MetricsServlet doGet");
+		Response response = new Response();
+		response.setContents(metrics.snapshot());
+		writeResponse(httpResponse, response);
+	}
+}
@@ -0,0 +1,122 @@
+package com.therdl.prime.calc.api;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.therdl.prime.calc.alg.count.NthPrimeAlg;
+import com.therdl.prime.calc.model.Request;
+import com.therdl.prime.calc.model.RequestField;
+import com.therdl.prime.calc.model.Response;
+import com.therdl.prime.calc.model.ResponseField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This servlet looks up the n-th prime. The request holds the 'n' and the response echoes it with the 'prime', please
+ * see {@link RequestField#N}.
+ * <p/>
+ * A request is admitted, timed and recorded in the metrics the same way as a prime calc request, please see
+ * {@link DispatcherServlet}.
+ */
+@Singleton
+public class NthPrimeServlet extends JsonServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger log = LoggerFactory.getLogger(NthPrimeServlet.class);
+
+	private NthPrimeAlg nthPrimeAlg;
+	private CostModel costModel;
+	private Admission admission;
+	private Timings timings;
+
+	@Inject
+	public NthPrimeServlet(NthPrimeAlg nthPrimeAlg, CostModel costModel, Admission admission, Timings timings,
+			ComputeExecutor computeExecutor, Timeouts timeouts, Metrics metrics) {
+		super(computeExecutor, timeouts, metrics);
+		this.nthPrimeAlg = nthPrimeAlg;
+		this.costModel = costModel;
+		this.admission = admission;
+		this.timings = timings;
+	}
+
+	@Override
+	protected void doPost(HttpServletRequest httpRequest, HttpServletResponse httpResponse)
+			throws ServletException, IOException {
+		log.debug("NthPrimeServlet doPost BEGIN");
+		long start = System.nanoTime();
+		PhaseTimer timer = timings.start();
+		Request request = null;
+		Set<Error> errors = new HashSet<>();
+		try {
+			String payload = readPayload(httpRequest);
+			timer.mark(PhaseTimer.Phase.READ);
+			request = parseRequest(payload);
+			timer.mark(PhaseTimer.Phase.PARSE);
+		} catch (IOException | ClassCastException e) {
+			log.error(e.getMessage(), e);
+		}
+
+		if (request == null) {
+			errors.add(Error.BAD_REQUEST);
+		} else if (!RequestField.N.isValid(request.getContents().get(RequestField.N.getLabel()))) {
+			errors.add(RequestField.N.getError());
+		} else if (!isValidTimeout(request)) {
+			errors.add(RequestField.TIMEOUT_MS.getError());
+		}
+		timer.mark(PhaseTimer.Phase.VALIDATE);
+
+		if (errors.isEmpty()) {
+			Request valid = request;
+			long deadline = deadline(request);
+			processAdmitted(httpRequest, httpResponse, admission, costModel.estimateNthPrime(request.getN()), deadline,
+					processErrors -> processRequest(valid, deadline, processErrors), timer,
+					() -> {
+						metrics.recordLatency(Metrics.NTH_PRIME, valid.getN(), System.nanoTime() - start);
+						timings.logIfSlow(timer, "n=" + valid.getN());
+					});
+		} else {
+			writeResponse(httpResponse, createErrorResponse(errors), timer);
+		}
+
+		log.debug("NthPrimeServlet doPost END");
+	}
+
+	public Response processRequest(Request request, long deadline, Set<Error> errors) {
+		try {
+			long n = request.getN();
+			long prime = nthPrimeAlg.process(n, deadline);
+			Response response = new Response();
+			Map<String, Object> responseMap = new HashMap<>();
+			responseMap.put(ResponseField.N.getLabel(), n);
+			responseMap.put(ResponseField.PRIME.getLabel(), prime);
+			response.setContents(responseMap);
+			return response;
+		} catch (TimeoutException e) {
+			log.error(e.getMessage(), e);
+			errors.add(Error.TIMEOUT_ERROR);
+		} catch (RejectedExecutionException e) {
+			//too many computations are waiting for memory already
+			log.debug(e.getMessage());
+			errors.add(Error.OVERLOADED);
+		} catch (InterruptedException e) {
+			//the client went away
+			Thread.currentThread().interrupt();
+			errors.add(Error.SERVER_ERROR);
+		} catch (Exception e) {
+			log.error(e.getMessage(), e);
+			errors.add(Error.SERVER_ERROR);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,119 @@
+package com.therdl.prime.calc.api;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the phases of a request, each {@link #mark(Phase)} closes the phase running since the previous mark. It is
+ * handed from the Jetty thread to the compute thread along with the request, one thread marks it at a time. A timer
+ * that is off does not read the clock at all, please see {@link Timings#start()}.
+ */
+public class PhaseTimer {
+
+	/**
+	 * The phases of a prime calc request in the order they run
+	 */
+	public enum Phase {
+		//reading the body
+		READ,
+		//deserializing the JSON
+		PARSE,
+		//checking the fields
+		VALIDATE,
+		//estimating the cost and admitting the request
+		ADMIT,
+		//waiting for a compute thread
+		QUEUE,
+		//running the algorithm
+		COMPUTE,
+		//serializing and writing the response
+		WRITE;
+
+		private final String label = name().toLowerCase(Locale.ROOT);
+
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	private static final Phase[] PHASES = Phase.values();
+
+	static final PhaseTimer OFF = new PhaseTimer(false, false);
+
+	private final boolean on;
+
+	private final boolean header;
+
+	private final long start;
+	private long last;
+	private final long[] nanos = new long[PHASES.length];
+	private int marked;
+
+	PhaseTimer(boolean on, boolean header) {
+		this.on = on;
+		this.header = header;
+		this.start = on ? System.nanoTime() : 0;
+		this.last = start;
+	}
+
+	/**
+	 * Closes a phase, the time since the previous mark is added to it
+	 *
+	 * @param phase the phase that just ended
+	 */
+	public void mark(Phase phase) {
+		if (!on) {
+			return;
+		}
+		long now = System.nanoTime();
+		nanos[phase.ordinal()] += now - last;
+		marked |= 1 << phase.ordinal();
+		last = now;
+	}
+
+	/**
+	 * @return true if the phases are answered in a Server-Timing header
+	 */
+	public boolean isHeader() {
+		return header;
+	}
+
+	/**
+	 * @return the nanoseconds from the start to the last mark
+	 */
+	public long getTotalNanos() {
+		return last - start;
+	}
+
+	/**
+	 * @return the phases marked so far and their total as a Server-Timing header value, in milliseconds
+	 */
+	public String toServerTiming() {
+		StringBuilder value = new StringBuilder();
+		for (Phase phase : PHASES) {
+			if ((marked & 1 << phase.ordinal()) != 0) {
+				value.append(phase.getLabel()).append(";dur=").append(millis(nanos[phase.ordinal()])).append(", ");
+			}
+		}
+		return value.append("total;dur=").append(millis(getTotalNanos())).toString();
+	}
+
+	/**
+	 * @return the phases marked so far and their total as key=value pairs, in milliseconds
+	 */
+	public String toLog() {
+		StringBuilder value = new StringBuilder("totalMs=").append(millis(getTotalNanos()));
+		for (Phase phase : PHASES) {
+			if ((marked & 1 << phase.ordinal()) != 0) {
+				value.append(' ').append(phase.getLabel()).append("Ms=").append(millis(nanos[phase.ordinal()]));
+			}
+		}
+		return value.toString();
+	}
+
+	//to the microsecond
+	private static String millis(long nanos) {
+		long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+		return String.format(Locale.ROOT, "%d.%03d", micros / 1000, micros % 1000);
+	}
+}
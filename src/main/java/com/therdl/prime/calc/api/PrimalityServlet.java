@@ -0,0 +1,127 @@
+package com.therdl.prime.calc.api;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.therdl.prime.calc.alg.primality.PrimalityAlg;
+import com.therdl.prime.calc.model.Request;
+import com.therdl.prime.calc.model.RequestField;
+import com.therdl.prime.calc.model.Response;
+import com.therdl.prime.calc.model.ResponseField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This servlet checks a list of numbers for primality in one round trip. The request holds the 'numbers' and the
+ * response an 'isPrime' list of booleans in step with them, please see {@link RequestField#NUMBERS}.
+ * <p/>
+ * A request is admitted, timed and recorded in the metrics the same way as a prime calc request, please see
+ * {@link DispatcherServlet}.
+ */
+@Singleton
+public class PrimalityServlet extends JsonServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger log = LoggerFactory.getLogger(PrimalityServlet.class);
+
+	private PrimalityAlg primalityAlg;
+	private CostModel costModel;
+	private Admission admission;
+	private Timings timings;
+
+	@Inject
+	public PrimalityServlet(PrimalityAlg primalityAlg, CostModel costModel, Admission admission, Timings timings,
+			ComputeExecutor computeExecutor, Timeouts timeouts, Metrics metrics) {
+		super(computeExecutor, timeouts, metrics);
+		this.primalityAlg = primalityAlg;
+		this.costModel = costModel;
+		this.admission = admission;
+		this.timings = timings;
+	}
+
+	@Override
+	protected void doPost(HttpServletRequest httpRequest, HttpServletResponse httpResponse)
+			throws ServletException, IOException {
+		log.debug("PrimalityServlet doPost BEGIN");
+		long start = System.nanoTime();
+		PhaseTimer timer = timings.start();
+		Request request = null;
+		Set<Error> errors = new HashSet<>();
+		try {
+			String payload = readPayload(httpRequest);
+			timer.mark(PhaseTimer.Phase.READ);
+			request = parseRequest(payload);
+			timer.mark(PhaseTimer.Phase.PARSE);
+		} catch (IOException | ClassCastException e) {
+			log.error(e.getMessage(), e);
+		}
+
+		if (request == null) {
+			errors.add(Error.BAD_REQUEST);
+		} else if (!RequestField.NUMBERS.isValid(request.getContents().get(RequestField.NUMBERS.getLabel()))) {
+			errors.add(RequestField.NUMBERS.getError());
+		} else if (!isValidTimeout(request)) {
+			errors.add(RequestField.TIMEOUT_MS.getError());
+		}
+		timer.mark(PhaseTimer.Phase.VALIDATE);
+
+		if (errors.isEmpty()) {
+			Request valid = request;
+			long deadline = deadline(request);
+			long[] numbers = request.getNumbers();
+			processAdmitted(httpRequest, httpResponse, admission, costModel.estimatePrimality(numbers), deadline,
+					processErrors -> processRequest(valid, deadline, processErrors), timer,
+					() -> {
+						metrics.recordLatency(Metrics.IS_PRIME, largest(numbers), System.nanoTime() - start);
+						timings.logIfSlow(timer, "numbers=" + numbers.length);
+					});
+		} else {
+			writeResponse(httpResponse, createErrorResponse(errors), timer);
+		}
+
+		log.debug("PrimalityServlet doPost END");
+	}
+
+	public Response processRequest(Request request, long deadline, Set<Error> errors) {
+		try {
+			boolean[] isPrime = primalityAlg.process(request.getNumbers(), deadline);
+			Response response = new Response();
+			Map<String, Object> responseMap = new HashMap<>();
+			responseMap.put(ResponseField.IS_PRIME.getLabel(), isPrime);
+			response.setContents(responseMap);
+			return response;
+		} catch (TimeoutException e) {
+			log.error(e.getMessage(), e);
+			errors.add(Error.TIMEOUT_ERROR);
+		} catch (RejectedExecutionException e) {
+			//the workers could not be scheduled
+			log.debug(e.getMessage());
+			errors.add(Error.TOO_BUSY);
+		} catch (InterruptedException e) {
+			//the client went away
+			Thread.currentThread().interrupt();
+			errors.add(Error.SERVER_ERROR);
+		} catch (Exception e) {
+			log.error(e.getMessage(), e);
+			errors.add(Error.SERVER_ERROR);
+		}
+		return null;
+	}
+
+	//the latencies are kept by the decade of the largest number checked
+	private static long largest(long[] numbers) {
+		return Arrays.stream(numbers).max().orElse(0);
+	}
+}
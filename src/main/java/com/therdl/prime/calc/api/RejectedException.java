@@ -0,0 +1,37 @@
+package com.therdl.prime.calc.api;
+
+/**
+ * Thrown by the {@link Admission} when a request is shed instead of being processed
+ */
+public class RejectedException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Error error;
+
+	private final long retryAfter;
+
+	/**
+	 * @param error      the reason the request was shed
+	 * @param retryAfter the seconds after which the request is worth retrying
+	 */
+	public RejectedException(Error error, long retryAfter) {
+		super(error.getLabel());
+		this.error = error;
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * @return the reason the request was shed
+	 */
+	public Error getError() {
+		return error;
+	}
+
+	/**
+	 * @return the seconds after which the request is worth retrying
+	 */
+	public long getRetryAfter() {
+		return retryAfter;
+	}
+}
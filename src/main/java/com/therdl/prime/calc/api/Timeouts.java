@@ -0,0 +1,41 @@
+package com.therdl.prime.calc.api;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import com.therdl.prime.calc.model.Request;
+import com.therdl.prime.calc.model.RequestField;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Works out by when a request has to be processed. The client may ask for its own timeout with
+ * {@link RequestField#TIMEOUT_MS}, otherwise 'timeout.defaultMs' applies, and either way it is capped by
+ * 'timeout.maxMs' so a single request cannot hold the compute threads for long.
+ */
+@Singleton
+public class Timeouts {
+
+	private final long defaultMs;
+
+	private final long maxMs;
+
+	/**
+	 * @param defaultMs the timeout of the requests not giving one, in milliseconds
+	 * @param maxMs     the highest timeout granted, in milliseconds
+	 */
+	@Inject
+	public Timeouts(@Named("timeout.defaultMs") long defaultMs, @Named("timeout.maxMs") long maxMs) {
+		this.defaultMs = defaultMs;
+		this.maxMs = maxMs;
+	}
+
+	/**
+	 * @param request a valid request, just received
+	 * @return the {@link System#nanoTime()} by which the request has to be processed
+	 */
+	public long deadline(Request request) {
+		long timeoutMs = Math.min(request.getTimeoutMs(defaultMs), maxMs);
+		return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+	}
+}
@@ -0,0 +1,58 @@
+package com.therdl.prime.calc.api;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts the {@link PhaseTimer} of every prime calc request and logs the requests slower than
+ * 'timing.slowRequestMs' with the time each phase took. With 'timing.serverTiming' the phases are also answered in
+ * a Server-Timing header, all but the writing of the response which only ends once the headers are sent. When
+ * neither is asked for the timers are off and cost nothing.
+ */
+@Singleton
+public class Timings {
+
+	private static final Logger log = LoggerFactory.getLogger(Timings.class);
+
+	private final boolean serverTiming;
+
+	private final long slowNanos;
+
+	/**
+	 * @param serverTiming  true to answer the phases in a Server-Timing header
+	 * @param slowRequestMs the time above which a request is logged as slow, in milliseconds, 0 to log none
+	 */
+	@Inject
+	public Timings(@Named("timing.serverTiming") boolean serverTiming,
+				   @Named("timing.slowRequestMs") long slowRequestMs) {
+		this.serverTiming = serverTiming;
+		this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowRequestMs);
+	}
+
+	/**
+	 * @return a timer started now, or one that is off if the timings are not asked for
+	 */
+	public PhaseTimer start() {
+		if (!serverTiming && slowNanos <= 0) {
+			return PhaseTimer.OFF;
+		}
+		return new PhaseTimer(true, serverTiming);
+	}
+
+	/**
+	 * Logs the request if it took longer than 'timing.slowRequestMs'
+	 *
+	 * @param timer   the timer of the request, marked up to its last phase
+	 * @param request what the request asked for, as key=value pairs
+	 */
+	public void logIfSlow(PhaseTimer timer, String request) {
+		if (slowNanos > 0 && timer.getTotalNanos() > slowNanos) {
+			log.warn("Slow request {} {}", request, timer.toLog());
+		}
+	}
+}
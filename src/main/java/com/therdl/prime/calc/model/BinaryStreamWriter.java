@@ -0,0 +1,157 @@
+package com.therdl.prime.calc.model;
+
+import com.therdl.prime.calc.alg.Primes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.PrimitiveIterator;
+
+/**
+ * Writes the primes of a response in one of the binary {@link Encoding}s straight to an output stream, chunk by chunk
+ * through a reusable byte buffer as the {@link JsonStreamWriter} does:
+ * <ul>
+ * <li>INT32 and INT64 write every prime as a little-endian int32 or int64</li>
+ * <li>VARINT writes the gap from the previous prime, the first one from 0, as an unsigned LEB128 varint: 7 bits a
+ * byte, lowest first, the high bit set on every byte but the last, so most gaps take a single byte</li>
+ * <li>BITMAP writes a bit per odd number from the first odd number of the range, bit i of the bitmap standing for
+ * the odd number first + 2 * i and bit i of the bitmap being bit i % 8 of byte i / 8. It stops at the last byte
+ * holding an odd number of the range, 2 is not in the bitmap and is a prime whenever the range covers it.</li>
+ * </ul>
+ */
+public class BinaryStreamWriter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	//the longest prime we write is a 10 byte varint
+	private static final int MAX_PRIME_LENGTH = 10;
+
+	//the request threads are pooled so each one keeps its buffer from one response to the next
+	private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+	private final OutputStream out;
+	private final byte[] buffer = BUFFERS.get();
+	private int position;
+
+	/**
+	 * @param out the stream to write the primes to
+	 */
+	public BinaryStreamWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes the primes in the given encoding and flushes the stream
+	 *
+	 * @param encoding the binary encoding
+	 * @param primes   the primes
+	 * @param from     the lower limit (inclusive) of the range the primes were found in, the start of the bitmap
+	 * @param to       the upper limit (inclusive) of the range the primes were found in, the end of the bitmap
+	 * @throws IOException if the stream cannot be written to
+	 */
+	public void write(Encoding encoding, Primes primes, long from, long to) throws IOException {
+		switch (encoding) {
+			case INT32:
+				writeFixed(primes, Integer.BYTES);
+				break;
+			case INT64:
+				writeFixed(primes, Long.BYTES);
+				break;
+			case VARINT:
+				writeVarints(primes);
+				break;
+			case BITMAP:
+				writeBitmap(primes, from, to);
+				break;
+			default:
+				throw new IllegalArgumentException("Not a binary encoding: " + encoding);
+		}
+		drain();
+		out.flush();
+	}
+
+	/**
+	 * @param from the lower limit (inclusive) of the range
+	 * @return the odd number the bitmap of the range starts at
+	 */
+	public static long bitmapStart(long from) {
+		return from | 1;
+	}
+
+	private void writeFixed(Primes primes, int bytes) throws IOException {
+		PrimitiveIterator.OfLong iterator = primes.iterator();
+		while (iterator.hasNext()) {
+			if (position + bytes > buffer.length) {
+				drain();
+			}
+			long prime = iterator.nextLong();
+			for (int i = 0; i < bytes; i++) {
+				buffer[position++] = (byte) (prime >>> 8 * i);
+			}
+		}
+	}
+
+	private void writeVarints(Primes primes) throws IOException {
+		long previous = 0;
+		PrimitiveIterator.OfLong iterator = primes.iterator();
+		while (iterator.hasNext()) {
+			if (position + MAX_PRIME_LENGTH > buffer.length) {
+				drain();
+			}
+			long prime = iterator.nextLong();
+			long gap = prime - previous;
+			previous = prime;
+			while ((gap & ~0x7FL) != 0) {
+				buffer[position++] = (byte) (gap & 0x7F | 0x80);
+				gap >>>= 7;
+			}
+			buffer[position++] = (byte) gap;
+		}
+	}
+
+	private void writeBitmap(Primes primes, long from, long to) throws IOException {
+		long start = bitmapStart(from);
+		if (to < start) {
+			return;
+		}
+		long bytes = ((to - start) / 2) / 8 + 1;
+		long written = 0;
+		int current = 0;
+		PrimitiveIterator.OfLong iterator = primes.iterator();
+		while (iterator.hasNext()) {
+			long prime = iterator.nextLong();
+			if (prime > to) {
+				break;
+			}
+			//2 is the only even prime and has no bit
+			if (prime < start || prime == 2) {
+				continue;
+			}
+			long bit = (prime - start) / 2;
+			long index = bit / 8;
+			//the bytes before the one of this prime are final
+			while (written < index) {
+				writeByte(current);
+				current = 0;
+				written++;
+			}
+			current |= 1 << (bit % 8);
+		}
+		while (written < bytes) {
+			writeByte(current);
+			current = 0;
+			written++;
+		}
+	}
+
+	private void writeByte(int value) throws IOException {
+		if (position == buffer.length) {
+			drain();
+		}
+		buffer[position++] = (byte) value;
+	}
+
+	private void drain() throws IOException {
+		out.write(buffer, 0, position);
+		position = 0;
+	}
+}
@@ -0,0 +1,58 @@
+package com.therdl.prime.calc.model;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * The opaque cursor handed out with a page of primes, see {@link RequestField#CURSOR}. It encodes the position the
+ * next page starts from so any node can serve it without keeping session state: a version byte followed by the 64
+ * bit position, in URL safe base64.
+ */
+public final class Cursor {
+
+	private static final byte VERSION = 1;
+
+	private static final int LENGTH = 1 + Long.BYTES;
+
+	private Cursor() {
+	}
+
+	/**
+	 * @param position the number the next page starts from
+	 * @return the cursor for the position
+	 */
+	public static String encode(long position) {
+		ByteBuffer bytes = ByteBuffer.allocate(LENGTH).put(VERSION).putLong(position);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array());
+	}
+
+	/**
+	 * @param cursor a cursor created by {@link #encode(long)}
+	 * @return the position the cursor encodes
+	 * @throws IllegalArgumentException if the cursor was not created by {@link #encode(long)}
+	 */
+	public static long decode(String cursor) {
+		byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+		if (bytes.length != LENGTH || bytes[0] != VERSION) {
+			throw new IllegalArgumentException("Not a cursor: " + cursor);
+		}
+		long position = ByteBuffer.wrap(bytes, 1, Long.BYTES).getLong();
+		if (position < 0) {
+			throw new IllegalArgumentException("Not a cursor: " + cursor);
+		}
+		return position;
+	}
+
+	/**
+	 * @param value the cursor from the request
+	 * @return true if the value is a cursor created by {@link #encode(long)}
+	 */
+	public static boolean isValid(Object value) {
+		try {
+			decode(value.toString());
+			return true;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.therdl.prime.calc.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The encodings the primes of a response can be answered in, picked by the Accept header of the request. JSON is the
+ * default, the binary ones answer the primes alone as the body, please see {@link BinaryStreamWriter}, and the other
+ * fields of the response in headers.
+ */
+public enum Encoding {
+
+	JSON("application/json"),
+	//4 bytes per prime, little-endian, only for primes up to Integer.MAX_VALUE
+	INT32("application/x-primes-int32"),
+	//8 bytes per prime, little-endian
+	INT64("application/x-primes-int64"),
+	//the gap to the previous prime, the first one from 0, as an unsigned LEB128 varint
+	VARINT("application/x-primes-varint"),
+	//a bit per odd number of the range, set for the primes
+	BITMAP("application/x-primes-bitmap");
+
+	private final String contentType;
+
+	Encoding(String contentType) {
+		this.contentType = contentType;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * @return true for the encodings answering the primes alone as the body
+	 */
+	public boolean isBinary() {
+		return this != JSON;
+	}
+
+	/**
+	 * Picks the encoding the client prefers out of the ones that can hold the primes, going by the quality values of
+	 * the media ranges and then by their order. A wildcard stands for JSON.
+	 *
+	 * @param accept the Accept header, null if there is none
+	 * @param to     the upper limit (inclusive) of the primes to answer
+	 * @return the encoding to answer in, null if none of the ones accepted can hold the primes
+	 */
+	public static Encoding negotiate(String accept, long to) {
+		if (accept == null || accept.trim().isEmpty()) {
+			return JSON;
+		}
+		List<MediaRange> ranges = new ArrayList<>();
+		for (String range : accept.split(",")) {
+			MediaRange mediaRange = MediaRange.parse(range);
+			if (mediaRange.quality > 0) {
+				ranges.add(mediaRange);
+			}
+		}
+		//a stable sort keeps the order of the ranges of equal quality
+		ranges.sort(Comparator.comparingDouble((MediaRange range) -> range.quality).reversed());
+		for (MediaRange range : ranges) {
+			//a bare * is sent by the HttpURLConnection of the JDK
+			if ("*/*".equals(range.type) || "*".equals(range.type) || "application/*".equals(range.type)) {
+				return JSON;
+			}
+			for (Encoding encoding : values()) {
+				if (encoding.contentType.equals(range.type) && (encoding != INT32 || to <= Integer.MAX_VALUE)) {
+					return encoding;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static class MediaRange {
+
+		private final String type;
+		private final double quality;
+
+		private MediaRange(String type, double quality) {
+			this.type = type;
+			this.quality = quality;
+		}
+
+		private static MediaRange parse(String range) {
+			String[] parts = range.split(";");
+			double quality = 1;
+			for (int i = 1; i < parts.length; i++) {
+				String parameter = parts[i].trim();
+				if (parameter.startsWith("q=")) {
+					try {
+						quality = Double.parseDouble(parameter.substring(2));
+					} catch (NumberFormatException e) {
+						quality = 0;
+					}
+				}
+			}
+			return new MediaRange(parts[0].trim().toLowerCase(Locale.ROOT), quality);
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package com.therdl.prime.calc.model;
+
+import com.therdl.prime.calc.alg.Primes;
+import flexjson.JSONSerializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+
+/**
+ * Writes the response contents as JSON straight to an output stream. The primes are encoded chunk by chunk into a
+ * reusable byte buffer with a dedicated number encoder, so the payload is never held in memory as a whole and the
+ * first bytes go out while the rest of the list is still being encoded. Boolean arrays are streamed the same way and
+ * lists of nested contents are written field by field, every other value is small and is handed over to flexjson.
+ */
+public class JsonStreamWriter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	//the longest number we write is Long.MIN_VALUE with 20 characters, plus the separating comma
+	private static final int MAX_NUMBER_LENGTH = 21;
+
+	//the ASCII digits of every number from 00 to 99, used to encode two digits at a time
+	private static final byte[] DIGIT_PAIRS = new byte[200];
+
+	static {
+		for (int i = 0; i < 100; i++) {
+			DIGIT_PAIRS[2 * i] = (byte) ('0' + i / 10);
+			DIGIT_PAIRS[2 * i + 1] = (byte) ('0' + i % 10);
+		}
+	}
+
+	private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+
+	//the request threads are pooled so each one keeps its buffer from one response to the next
+	private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+	private final OutputStream out;
+	private final byte[] buffer = BUFFERS.get();
+	private int position;
+
+	/**
+	 * @param out the stream to write the JSON to
+	 */
+	public JsonStreamWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes the given contents as a JSON object followed by a new line and flushes the stream
+	 *
+	 * @param contents the response contents
+	 * @throws IOException if the stream cannot be written to
+	 */
+	public void write(Map<String, Object> contents) throws IOException {
+		writeObject(contents, new JSONSerializer());
+		writeByte('\n');
+		flush();
+	}
+
+	private void writeObject(Map<?, ?> contents, JSONSerializer serializer) throws IOException {
+		writeByte('{');
+		boolean first = true;
+		for (Map.Entry<?, ?> entry : contents.entrySet()) {
+			if (!first) {
+				writeByte(',');
+			}
+			first = false;
+			writeAscii(serializer.serialize(entry.getKey()));
+			writeByte(':');
+			if (entry.getValue() instanceof Primes) {
+				writePrimes((Primes) entry.getValue());
+			} else if (entry.getValue() instanceof boolean[]) {
+				writeBooleans((boolean[]) entry.getValue());
+			} else if (isObjects(entry.getValue())) {
+				writeObjects((List<?>) entry.getValue(), serializer);
+			} else {
+				writeAscii(serializer.deepSerialize(entry.getValue()));
+			}
+		}
+		writeByte('}');
+	}
+
+	//a list of nested contents, such as the results of a batch, each one may hold primes to stream
+	private static boolean isObjects(Object value) {
+		return value instanceof List && !((List<?>) value).isEmpty() && ((List<?>) value).get(0) instanceof Map;
+	}
+
+	private void writeObjects(List<?> objects, JSONSerializer serializer) throws IOException {
+		writeByte('[');
+		for (int i = 0; i < objects.size(); i++) {
+			if (i > 0) {
+				writeByte(',');
+			}
+			Object object = objects.get(i);
+			if (object instanceof Map) {
+				writeObject((Map<?, ?>) object, serializer);
+			} else {
+				writeAscii(serializer.deepSerialize(object));
+			}
+		}
+		writeByte(']');
+	}
+
+	private void writePrimes(Primes primes) throws IOException {
+		writeByte('[');
+		PrimitiveIterator.OfLong iterator = primes.iterator();
+		while (iterator.hasNext()) {
+			if (position + MAX_NUMBER_LENGTH > buffer.length) {
+				drain();
+			}
+			writeNumber(iterator.nextLong());
+			if (iterator.hasNext()) {
+				buffer[position++] = ',';
+			}
+		}
+		writeByte(']');
+	}
+
+	private void writeBooleans(boolean[] values) throws IOException {
+		writeByte('[');
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				writeByte(',');
+			}
+			writeBytes(values[i] ? TRUE : FALSE);
+		}
+		writeByte(']');
+	}
+
+	//encodes the number in place, the caller makes sure there is room in the buffer
+	private void writeNumber(long nr) {
+		if (nr < 0) {
+			if (nr == Long.MIN_VALUE) {
+				byte[] min = Long.toString(nr).getBytes(StandardCharsets.US_ASCII);
+				System.arraycopy(min, 0, buffer, position, min.length);
+				position += min.length;
+				return;
+			}
+			buffer[position++] = '-';
+			nr = -nr;
+		}
+		int end = position + digits(nr);
+		int index = end;
+		while (nr >= 100) {
+			int pair = (int) (nr % 100) * 2;
+			nr /= 100;
+			buffer[--index] = DIGIT_PAIRS[pair + 1];
+			buffer[--index] = DIGIT_PAIRS[pair];
+		}
+		if (nr >= 10) {
+			int pair = (int) nr * 2;
+			buffer[--index] = DIGIT_PAIRS[pair + 1];
+			buffer[--index] = DIGIT_PAIRS[pair];
+		} else {
+			buffer[--index] = (byte) ('0' + nr);
+		}
+		position = end;
+	}
+
+	private static int digits(long nr) {
+		int digits = 1;
+		for (long bound = 10; digits < 19 && nr >= bound; bound *= 10) {
+			digits++;
+		}
+		return digits;
+	}
+
+	private void writeAscii(String value) throws IOException {
+		writeBytes(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void writeBytes(byte[] bytes) throws IOException {
+		if (position + bytes.length > buffer.length) {
+			drain();
+		}
+		if (bytes.length > buffer.length) {
+			out.write(bytes);
+		} else {
+			System.arraycopy(bytes, 0, buffer, position, bytes.length);
+			position += bytes.length;
+		}
+	}
+
+	private void writeByte(char value) throws IOException {
+		if (position == buffer.length) {
+			drain();
+		}
+		buffer[position++] = (byte) value;
+	}
+
+	private void drain() throws IOException {
+		out.write(buffer, 0, position);
+		position = 0;
+	}
+
+	private void flush() throws IOException {
+		drain();
+		out.flush();
+	}
+}
@@ -16,7 +16,19 @@ public enum Method {
 	/**
 	 * An algorithm that uses the Lucas primality test: https://en.wikipedia.org/wiki/Lucas_primality_test
 	 */
-	LUCAS_FILTER;
+	LUCAS_FILTER,
+
+	/**
+	 * The deterministic Miller-Rabin primality test for 64 bit numbers, suited to narrow windows of large numbers:
+	 * https://en.wikipedia.org/wiki/Miller%E2%80%93Rabin_primality_test
+	 */
+	MILLER_RABIN,
+
+	/**
+	 * Counts the primes in the range without listing them using Lucy_Hedgehog's prime counting algorithm, the
+	 * response holds the 'count' instead of the primes: https://en.wikipedia.org/wiki/Prime-counting_function
+	 */
+	COUNT;
 
 	public static String printMethods() {
 		StringBuilder sb = new StringBuilder();
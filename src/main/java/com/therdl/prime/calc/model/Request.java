@@ -1,6 +1,8 @@
 package com.therdl.prime.calc.model;
 
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Encapsulates a prime calc service request
@@ -25,4 +27,89 @@ public class Request {
 	public Map<String, Object> getContents() {
 		return contents;
 	}
+
+	/**
+	 * @return the lower limit (inclusive) of the requested range, 0 if not given
+	 */
+	public long getFrom() {
+		Object from = contents.get(RequestField.FROM.getLabel());
+		return from == null ? 0 : Long.parseLong(from.toString());
+	}
+
+	/**
+	 * @return the upper limit (inclusive) of the requested range, the limit if not given
+	 */
+	public long getTo() {
+		Object to = contents.get(RequestField.TO.getLabel());
+		if (to == null) {
+			to = contents.get(RequestField.LIMIT.getLabel());
+		}
+		return Long.parseLong(to.toString());
+	}
+
+	/**
+	 * @return true if the primes are asked for one page at a time
+	 */
+	public boolean isPaged() {
+		return contents.containsKey(RequestField.PAGE_SIZE.getLabel());
+	}
+
+	/**
+	 * @return the most primes in a page
+	 */
+	public int getPageSize() {
+		return Integer.parseInt(contents.get(RequestField.PAGE_SIZE.getLabel()).toString());
+	}
+
+	/**
+	 * @return the number the page starts from, the cursor position if given or else the lower limit of the range
+	 */
+	public long getPageStart() {
+		Object cursor = contents.get(RequestField.CURSOR.getLabel());
+		return cursor == null ? getFrom() : Cursor.decode(cursor.toString());
+	}
+
+	/**
+	 * @return the position of the prime asked for
+	 */
+	public long getN() {
+		return Long.parseLong(contents.get(RequestField.N.getLabel()).toString());
+	}
+
+	/**
+	 * @param defaultMs the timeout to use if the request does not give one
+	 * @return the time the client allows for the processing in milliseconds
+	 */
+	public long getTimeoutMs(long defaultMs) {
+		Object timeoutMs = contents.get(RequestField.TIMEOUT_MS.getLabel());
+		return timeoutMs == null ? defaultMs : Long.parseLong(timeoutMs.toString());
+	}
+
+	/**
+	 * @return true if the request is a batch of jobs, please see {@link RequestField#JOBS}
+	 */
+	public boolean isBatch() {
+		return contents.containsKey(RequestField.JOBS.getLabel());
+	}
+
+	/**
+	 * @return the jobs of a batch, each one a prime calc request, in the order given
+	 */
+	public List<Request> getJobs() {
+		List<?> jobs = (List<?>) contents.get(RequestField.JOBS.getLabel());
+		return jobs.stream().map(job -> {
+			//the jobs are JSON objects, whose keys are always strings
+			@SuppressWarnings("unchecked")
+			Map<String, Object> jobContents = (Map<String, Object>) job;
+			return new Request(jobContents);
+		}).collect(Collectors.toList());
+	}
+
+	/**
+	 * @return the numbers to check for primality, in the order given
+	 */
+	public long[] getNumbers() {
+		List<?> numbers = (List<?>) contents.get(RequestField.NUMBERS.getLabel());
+		return numbers.stream().mapToLong(n -> Long.parseLong(n.toString())).toArray();
+	}
 }
@@ -1,8 +1,11 @@
 package com.therdl.prime.calc.model;
 
+import com.therdl.prime.calc.alg.count.NthPrimeAlg;
 import com.therdl.prime.calc.api.Error;
 import org.apache.commons.lang3.math.NumberUtils;
 
+import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 
 /**
@@ -18,7 +21,7 @@ public enum RequestField {
 		} catch (Exception e) {
 			return false;
 		}
-	}, Error.BAD_METHOD),
+	}, c -> true, Error.BAD_METHOD),
 	LIMIT("limit", v -> {
 		try {
 			if (!NumberUtils.isNumber(v.toString())) {
@@ -32,15 +35,50 @@ public enum RequestField {
 			return false;
 		}
 		return true;
-	}, Error.BAD_LIMIT);
+	}, c -> !isRangeGiven(c), Error.BAD_LIMIT),
+	FROM("from", RequestField::isValidBound, c -> false, Error.BAD_RANGE),
+	TO("to", RequestField::isValidBound, c -> false, Error.BAD_RANGE),
+	NUMBERS("numbers", RequestField::isValidNumbers, c -> false, Error.BAD_NUMBERS),
+	N("n", RequestField::isValidN, c -> false, Error.BAD_N),
+	PAGE_SIZE("pageSize", RequestField::isValidPageSize, RequestField::isCursorGiven, Error.BAD_PAGE_SIZE),
+	CURSOR("cursor", Cursor::isValid, c -> false, Error.BAD_CURSOR),
+	TIMEOUT_MS("timeoutMs", RequestField::isValidTimeout, c -> false, Error.BAD_TIMEOUT),
+	JOBS("jobs", RequestField::isValidJobs, c -> false, Error.BAD_JOBS);
+
+	/**
+	 * The highest value accepted for the upper limit of a range
+	 */
+	public static final long MAX_TO = 1_000_000_000_000_000_000L;
+
+	/**
+	 * The widest range accepted, the same as the highest limit
+	 */
+	public static final long MAX_RANGE = Integer.MAX_VALUE - 5;
+
+	/**
+	 * The most numbers accepted in a single primality check request
+	 */
+	public static final int MAX_NUMBERS = 100_000;
+
+	/**
+	 * The most primes accepted in a single page
+	 */
+	public static final int MAX_PAGE_SIZE = 1_000_000;
+
+	/**
+	 * The most jobs accepted in a single batch
+	 */
+	public static final int MAX_JOBS = 1_000;
 
 	private String label;
 	private Predicate<Object> validTest;
+	private Predicate<Map<String, Object>> requiredTest;
 	private Error error;
 
-	RequestField(String label, Predicate<Object> validTest, Error error) {
+	RequestField(String label, Predicate<Object> validTest, Predicate<Map<String, Object>> requiredTest, Error error) {
 		this.label = label;
 		this.validTest = validTest;
+		this.requiredTest = requiredTest;
 		this.error = error;
 	}
 
@@ -54,6 +92,17 @@ public enum RequestField {
 		return validTest.test(value);
 	}
 
+	/**
+	 * Checks if this field must be present in the given request, some fields are only required when others are
+	 * missing. For example the limit is only required when the request does not give the upper limit of a range.
+	 *
+	 * @param contents the request contents
+	 * @return true if the field is required
+	 */
+	public boolean isRequired(Map<String, Object> contents) {
+		return requiredTest.test(contents);
+	}
+
 	/**
 	 * @return the string label expected in the JSON request
 	 */
@@ -67,4 +116,89 @@ public enum RequestField {
 	public Error getError() {
 		return error;
 	}
+
+	private static boolean isValidBound(Object value) {
+		try {
+			if (!NumberUtils.isDigits(value.toString())) {
+				return false;
+			}
+			long nr = Long.parseLong(value.toString());
+			return nr <= MAX_TO;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private static boolean isValidNumbers(Object value) {
+		if (!(value instanceof List)) {
+			return false;
+		}
+		List<?> numbers = (List<?>) value;
+		if (numbers.isEmpty() || numbers.size() > MAX_NUMBERS) {
+			return false;
+		}
+		for (Object number : numbers) {
+			try {
+				if (number == null || !NumberUtils.isDigits(number.toString())) {
+					return false;
+				}
+				Long.parseLong(number.toString());
+			} catch (Exception e) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isValidN(Object value) {
+		try {
+			if (!NumberUtils.isDigits(value.toString())) {
+				return false;
+			}
+			long n = Long.parseLong(value.toString());
+			return n >= 1 && n <= NthPrimeAlg.MAX_N;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private static boolean isValidPageSize(Object value) {
+		try {
+			if (!NumberUtils.isDigits(value.toString())) {
+				return false;
+			}
+			int pageSize = Integer.parseInt(value.toString());
+			return pageSize >= 1 && pageSize <= MAX_PAGE_SIZE;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private static boolean isValidTimeout(Object value) {
+		try {
+			if (!NumberUtils.isDigits(value.toString())) {
+				return false;
+			}
+			return Long.parseLong(value.toString()) >= 1;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	//each job is checked on its own when the batch is processed
+	private static boolean isValidJobs(Object value) {
+		if (!(value instanceof List)) {
+			return false;
+		}
+		List<?> jobs = (List<?>) value;
+		return !jobs.isEmpty() && jobs.size() <= MAX_JOBS && jobs.stream().allMatch(job -> job instanceof Map);
+	}
+
+	private static boolean isRangeGiven(Map<String, Object> contents) {
+		return contents.containsKey(TO.getLabel());
+	}
+
+	private static boolean isCursorGiven(Map<String, Object> contents) {
+		return contents.containsKey(CURSOR.getLabel());
+	}
 }
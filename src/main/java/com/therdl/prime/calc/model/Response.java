@@ -1,7 +1,13 @@
 package com.therdl.prime.calc.model;
 
+import com.therdl.prime.calc.alg.MemoryGovernor;
+import com.therdl.prime.calc.alg.Primes;
 import flexjson.JSONSerializer;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -11,13 +17,26 @@ import java.util.Map;
 public class Response {
 
 	public static final int BAD_REQUEST = 400;
+	public static final int NOT_ACCEPTABLE = 406;
 	public static final int OK = 200;
+	public static final int TOO_MANY_REQUESTS = 429;
 	public static final int SERVER_ERROR = 500;
+	public static final int SERVICE_UNAVAILABLE = 503;
 
 	private int statusCode = OK;
 
+	private long retryAfter;
+
 	private Map<String, Object> contents;
 
+	private Encoding encoding = Encoding.JSON;
+
+	private long coveredFrom;
+	private long coveredTo;
+
+	//the memory of the primes answered, held until the response is written
+	private final List<MemoryGovernor.Reservation> held = new ArrayList<>();
+
 	/**
 	 * @return The HTTP status code of the response
 	 */
@@ -29,6 +48,17 @@ public class Response {
 		this.statusCode = statusCode;
 	}
 
+	/**
+	 * @return the seconds after which a shed request is worth retrying, 0 if there is no Retry-After header
+	 */
+	public long getRetryAfter() {
+		return retryAfter;
+	}
+
+	public void setRetryAfter(long retryAfter) {
+		this.retryAfter = retryAfter;
+	}
+
 	/**
 	 * @return The contents of the response in JSON format
 	 */
@@ -36,6 +66,56 @@ public class Response {
 		return new JSONSerializer().deepSerialize(contents);
 	}
 
+	/**
+	 * Streams the contents of the response in JSON format, please see {@link JsonStreamWriter}, or only the primes if
+	 * the encoding is a binary one, please see {@link BinaryStreamWriter}
+	 *
+	 * @param out the stream to write to
+	 * @throws IOException if the stream cannot be written to
+	 */
+	public void writePayload(OutputStream out) throws IOException {
+		if (encoding.isBinary()) {
+			Primes primes = (Primes) contents.get(ResponseField.PRIMES.getLabel());
+			new BinaryStreamWriter(out).write(encoding, primes, coveredFrom, coveredTo);
+		} else {
+			new JsonStreamWriter(out).write(contents);
+		}
+	}
+
+	/**
+	 * @return the encoding the response is written in, JSON unless the client asked for a binary one
+	 */
+	public Encoding getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * Answers the primes of the response in a binary encoding
+	 *
+	 * @param encoding    the encoding to write the primes in
+	 * @param coveredFrom the lower limit (inclusive) of the numbers the primes were looked for in
+	 * @param coveredTo   the upper limit (inclusive) of the numbers the primes were looked for in
+	 */
+	public void setEncoding(Encoding encoding, long coveredFrom, long coveredTo) {
+		this.encoding = encoding;
+		this.coveredFrom = coveredFrom;
+		this.coveredTo = coveredTo;
+	}
+
+	/**
+	 * @return the lower limit (inclusive) of the numbers the primes were looked for in, for a binary encoding
+	 */
+	public long getCoveredFrom() {
+		return coveredFrom;
+	}
+
+	/**
+	 * @return the upper limit (inclusive) of the numbers the primes were looked for in, for a binary encoding
+	 */
+	public long getCoveredTo() {
+		return coveredTo;
+	}
+
 	/**
 	 * @return The contents of the response
 	 */
@@ -47,4 +127,31 @@ public class Response {
 		this.contents = contents;
 	}
 
+	/**
+	 * Holds the memory of the primes answered until the response is written, please see {@link #release()}
+	 *
+	 * @param reservation the memory accounted for the primes
+	 */
+	public void hold(MemoryGovernor.Reservation reservation) {
+		held.add(reservation);
+	}
+
+	/**
+	 * Takes over the memory held by a response whose contents are answered as part of this one
+	 *
+	 * @param other the response answered as part of this one
+	 */
+	public void holdAll(Response other) {
+		held.addAll(other.held);
+		other.held.clear();
+	}
+
+	/**
+	 * Releases the memory held by the response, once it is written or replaced
+	 */
+	public void release() {
+		held.forEach(MemoryGovernor.Reservation::close);
+		held.clear();
+	}
+
 }
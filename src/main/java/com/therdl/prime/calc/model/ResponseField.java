@@ -8,7 +8,16 @@ public enum ResponseField {
 
 	ERROR("error"),
 	PRIMES("primes"),
-	LIMIT("limit");
+	LIMIT("limit"),
+	FROM("from"),
+	TO("to"),
+	IS_PRIME("isPrime"),
+	COUNT("count"),
+	N("n"),
+	PRIME("prime"),
+	NEXT_CURSOR("nextCursor"),
+	COMPLETE_UP_TO("completeUpTo"),
+	RESULTS("results");
 
 	private String label;
 
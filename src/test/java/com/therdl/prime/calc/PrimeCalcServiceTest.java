@@ -1,7 +1,11 @@
 package com.therdl.prime.calc;
 
+import com.therdl.prime.calc.alg.count.PrimeCountAlg;
 import com.therdl.prime.calc.api.Error;
+import com.therdl.prime.calc.api.Metrics;
+import com.therdl.prime.calc.model.Cursor;
 import com.therdl.prime.calc.model.Method;
+import com.therdl.prime.calc.model.RequestField;
 import com.therdl.prime.calc.model.Response;
 import com.therdl.prime.calc.model.ResponseField;
 import flexjson.JSONSerializer;
@@ -11,12 +15,24 @@ import org.junit.experimental.runners.Enclosed;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.*;
 
+import static com.therdl.prime.calc.model.RequestField.CURSOR;
 import static com.therdl.prime.calc.model.RequestField.LIMIT;
 import static com.therdl.prime.calc.model.RequestField.METHOD;
+import static com.therdl.prime.calc.model.RequestField.PAGE_SIZE;
+import static com.therdl.prime.calc.model.RequestField.TIMEOUT_MS;
 import static com.therdl.prime.calc.TestUtil.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -27,6 +43,9 @@ public class PrimeCalcServiceTest {
 
 	private static RestClient rc;
 
+	//pi(Integer.MAX_VALUE - 5), Integer.MAX_VALUE being the next prime
+	private static final long PRIMES_UP_TO_LIMIT = 105097564;
+
 	@BeforeClass
 	public static void setUp() {
 		ServiceControl.main(null);
@@ -42,7 +61,8 @@ public class PrimeCalcServiceTest {
 		public static Collection methodsToTest() {
 			return Arrays.asList(new Object[][]{
 					{Method.SIEVE},
-					{Method.LUCAS_FILTER}
+					{Method.LUCAS_FILTER},
+					{Method.MILLER_RABIN}
 			});
 		}
 
@@ -225,6 +245,51 @@ public class PrimeCalcServiceTest {
 			assertTrue("Primes must contain 7919", primes.contains(7919L));
 		}
 
+		@Test
+		public void rangeTest() {
+			//Given
+			Map<String, Object> requestMap = buildRangeRequest(method.name(), "7800", 7919L);
+
+			//When
+			Response response = rc.sendRequest(new JSONSerializer().deepSerialize(requestMap), "POST");
+			Map<String, Object> responseMap = response.getContents();
+
+			//Then
+			assertEquals("Status code must be 200", response.getStatusCode(), 200);
+			assertTrue("Response contains primes", responseMap.containsKey(ResponseField.PRIMES.getLabel()));
+			List<Long> primes = (List<Long>) responseMap.get(ResponseField.PRIMES.getLabel());
+			List<Integer> expected = primesTill7919.subList(primesTill7919.indexOf(7817), primesTill7919.size());
+			assertTrue("Primes size must be: " + expected.size(), primes.size() == expected.size());
+			primes.forEach(p -> assertTrue("Primes must contain: " + p.intValue(), expected.contains(p.intValue())));
+		}
+
+		@Test
+		public void pagingTest() {
+			//Given
+			Map<String, Object> requestMap = buildRangeRequest(method.name(), "0", 7919L);
+			requestMap.put(PAGE_SIZE.getLabel(), 300);
+			List<Integer> primes = new ArrayList<>();
+			int pages = 0;
+
+			//When
+			Object cursor;
+			do {
+				Response response = rc.sendRequest(new JSONSerializer().deepSerialize(requestMap), "POST");
+				assertEquals("Status code must be 200", response.getStatusCode(), 200);
+				List<Long> page = (List<Long>) response.getContents().get(ResponseField.PRIMES.getLabel());
+				assertTrue("Pages must not be larger than the page size", page.size() <= 300);
+				page.forEach(p -> primes.add(p.intValue()));
+				cursor = response.getContents().get(ResponseField.NEXT_CURSOR.getLabel());
+				requestMap.put(CURSOR.getLabel(), cursor);
+				pages++;
+			} while (cursor != null);
+
+			//Then
+			assertEquals("The pages must hold all the primes in order", primesTill7919, primes);
+			assertTrue("There must be at least " + primesTill7919.size() / 300 + " pages",
+					pages >= primesTill7919.size() / 300);
+		}
+
 		@Test
 		public void limitRequiredErrorTest() {
 			//Given
@@ -262,20 +327,54 @@ public class PrimeCalcServiceTest {
 		}
 
 		@Test
-		public void upperLimitTest() {
+		public void upperLimitTest() throws IOException {
 			//Given
-			Map<String, Object> requestMap = buildRequest(method.name(), Integer.MAX_VALUE - 5);
-
-			//When
-			Response response = rc.sendRequest(new JSONSerializer().deepSerialize(requestMap), "POST");
-			Map<String, Object> responseMap = response.getContents();
+			int limit = Integer.MAX_VALUE - 5;
+			Map<String, Object> requestMap = buildRequest(method.name(), limit);
+			requestMap.put(TIMEOUT_MS.getLabel(), "500");
+
+			//When the varints are decoded as they are read, a complete list would be far too large to hold
+			HttpURLConnection connection = rc.sendBinaryRequest(new JSONSerializer().deepSerialize(requestMap),
+					"application/x-primes-varint");
+			long count = 0;
+			long prime = 0;
+			Deque<Long> tail = new ArrayDeque<>();
+			try (InputStream in = new BufferedInputStream(connection.getInputStream())) {
+				long gap = 0;
+				int shift = 0;
+				int b;
+				while ((b = in.read()) != -1) {
+					gap |= (long) (b & 0x7F) << shift;
+					shift += 7;
+					if ((b & 0x80) == 0) {
+						prime += gap;
+						count++;
+						tail.addLast(prime);
+						if (tail.size() > 10) {
+							tail.removeFirst();
+						}
+						gap = 0;
+						shift = 0;
+					}
+				}
+			}
+			String completeUpTo = connection.getHeaderField("X-Complete-Up-To");
+			long provenUpTo = completeUpTo == null ? limit : Long.parseLong(completeUpTo);
 
 			//Then
-			assertEquals("Status code must be 400", response.getStatusCode(), 400);
-			assertTrue("Response contains error", responseMap.containsKey(ResponseField.ERROR.getLabel()));
-			List<String> errors = (List<String>) responseMap.get(ResponseField.ERROR.getLabel());
-			assertTrue("There must be only one error", errors.size() == 1);
-			assertTrue("The error must be timeout", errors.contains(Error.TIMEOUT_ERROR.getLabel()));
+			assertEquals("Status code must be 200", 200, connection.getResponseCode());
+			assertEquals("Every prime counted must be in the body",
+					Long.parseLong(connection.getHeaderField("X-Primes-Count")), count);
+			assertTrue("The primes proven before the timeout must be answered", count > 0);
+			if (completeUpTo == null) {
+				assertEquals("All the primes up to the limit must be answered", PRIMES_UP_TO_LIMIT, count);
+			} else {
+				assertTrue("The primes must only be complete up to a part of the range", provenUpTo < limit);
+			}
+			for (long n = tail.getFirst(); n <= provenUpTo; n++) {
+				assertEquals("The last primes must be the ones up to " + provenUpTo, tail.contains(n),
+						BigInteger.valueOf(n).isProbablePrime(50));
+			}
 		}
 
 		@Test
@@ -390,6 +489,177 @@ public class PrimeCalcServiceTest {
 			assertTrue("The error must be bad limit", errors.contains(Error.BAD_LIMIT.getLabel()));
 		}
 
+		@Test
+		public void highRangeSieveTest() {
+			//Given
+			Map<String, Object> requestMap = buildRangeRequest(Method.SIEVE.name(), 1000000000000000L,
+					1000000000000300L);
+
+			//When
+			Response response = rc.sendRequest(new JSONSerializer().deepSerialize(requestMap), "POST");
+			Map<String, Object> responseMap = response.getContents();
+
+			//Then
+			assertEquals("Status code must be 200", response.getStatusCode(), 200);
+			assertTrue("Response contains primes", responseMap.containsKey(ResponseField.PRIMES.getLabel()));
+			List<Long> primes = (List<Long>) responseMap.get(ResponseField.PRIMES.getLabel());
+			assertEquals("Primes must be the ones in the window", primesFrom1e15To1e15Plus300, primes);
+		}
+
+		@Test
+		public void badRangeErrorTest() {
+			//Given
+			Map<String, Object> requestMap = buildRangeRequest(Method.SIEVE.name(), "300", "200");
+
+			//When
+			Response response = rc.sendRequest(new JSONSerializer().deepSerialize(requestMap), "POST");
+			Map<String, Object> responseMap = response.getContents();
+
+			//Then
+			assertEquals("Status code must be 400", response.getStatusCode(), 400);
+			assertTrue("Response contains error", responseMap.containsKey(ResponseField.ERROR.getLabel()));
+			List<String> errors = (List<String>) responseMap.get(ResponseField.ERROR.getLabel());
+			assertTrue("There must be only one error", errors.size() == 1);
+			assertTrue("The error must be bad range", errors.contains(Error.BAD_RANGE.getLabel()));
+		}
+
+		@Test
+		public void isPrimeTest() {
+			//Given
+			Map<String, Object> requestMap = buildNumbersRequest(Arrays.asList(0, 1, 2, 7919, 7921, 1000000000000037L,
+					1000000000000039L, "999999999999999989"));
+
+			//When
+			Response response = rc.sendRequest(new JSONSerializer().deepSerialize(requestMap), "POST",
+					RestClient.IS_PRIME_END_POINT);
+			Map<String, Object> responseMap = response.getContents();
+
+			//Then
+			assertEquals("Status code must be 200", response.getStatusCode(), 200);
+			assertEquals("The answers must be in step with the numbers",
+					Arrays.asList(false, false, true, true, false, true, false, true),
+					responseMap.get(ResponseField.IS_PRIME.getLabel()));
+		}
+
+		@Test
+		public void badNumbersErrorTest() {
+			//Given
+			Map<String, Object> requestMap = buildNumbersRequest(Arrays.asList(7, "-3"));
+
+			//When
+			Response response = rc.sendRequest(new JSONSerializer().deepSerialize(requestMap), "POST",
+					RestClient.IS_PRIME_END_POINT);
+			Map<String, Object> responseMap = response.getContents();
+
+			//Then
+			assertEquals("Status code must be 400", response.getStatusCode(), 400);
+			List<String> errors = (List<String>) responseMap.get(ResponseField.ERROR.getLabel());
+			assertTrue("There must be only one error", errors.size() == 1);
+			assertTrue("The error must be bad numbers", errors.contains(Error.BAD_NUMBERS.getLabel()));
+		}
+
+		@Test
+		public void countTest() {
+			//Given
+			Map<String, Object> requestMap = buildRangeRequest(Method.COUNT.name(), "1", "100000000000");
+
+			//When
+			Response response = rc.sendRequest(new JSONSerializer().deepSerialize(requestMap), "POST");
+			Map<String, Object> responseMap = response.getContents();
+
+			//Then
+			assertEquals("Status code must be 200", response.getStatusCode(), 200);
+			assertFalse("Response must not contain primes", responseMap.containsKey(ResponseField.PRIMES.getLabel()));
+			assertEquals("The count must be pi(10^11)", 4118054813L,
+					((Number) responseMap.get(ResponseField.COUNT.getLabel())).longValue());
+		}
+
+		@Test
+		public void badCountErrorTest() {
+			//Given
+			Map<String, Object> requestMap = buildRangeRequest(Method.COUNT.name(), "0",
+					String.valueOf(PrimeCountAlg.MAX_LIMIT + 1));
+
+			//When
+			Response response = rc.sendRequest(new JSONSerializer().deepSerialize(requestMap), "POST");
+			Map<String, Object> responseMap = response.getContents();
+
+			//Then
+			assertEquals("Status code must be 400", response.getStatusCode(), 400);
+			List<String> errors = (List<String>) responseMap.get(ResponseField.ERROR.getLabel());
+			assertTrue("There must be only one error", errors.size() == 1);
+			assertTrue("The error must be bad count", errors.contains(Error.BAD_COUNT.getLabel()));
+		}
+
+		@Test
+		public void badCursorErrorTest() {
+			//Given
+			Map<String, Object> requestMap = buildRangeRequest(Method.SIEVE.name(), "100", "200");
+			requestMap.put(PAGE_SIZE.getLabel(), 10);
+			requestMap.put(CURSOR.getLabel(), Cursor.encode(50));
+
+			//When
+			Response response = rc.sendRequest(new JSONSerializer().deepSerialize(requestMap), "POST");
+			Map<String, Object> responseMap = response.getContents();
+
+			//Then
+			assertEquals("Status code must be 400", response.getStatusCode(), 400);
+			List<String> errors = (List<String>) responseMap.get(ResponseField.ERROR.getLabel());
+			assertTrue("There must be only one error", errors.size() == 1);
+			assertTrue("The error must be bad cursor", errors.contains(Error.BAD_CURSOR.getLabel()));
+		}
+
+		@Test
+		public void nthPrimeTest() {
+			//Given
+			Map<String, Object> requestMap = buildNthPrimeRequest("100000000");
+
+			//When
+			Response response = rc.sendRequest(new JSONSerializer().deepSerialize(requestMap), "POST",
+					RestClient.NTH_PRIME_END_POINT);
+			Map<String, Object> responseMap = response.getContents();
+
+			//Then
+			assertEquals("Status code must be 200", response.getStatusCode(), 200);
+			assertEquals("The prime must be number 10^8", 2038074743L,
+					((Number) responseMap.get(ResponseField.PRIME.getLabel())).longValue());
+		}
+
+		@Test
+		public void badNErrorTest() {
+			//Given
+			Map<String, Object> requestMap = buildNthPrimeRequest(0);
+
+			//When
+			Response response = rc.sendRequest(new JSONSerializer().deepSerialize(requestMap), "POST",
+					RestClient.NTH_PRIME_END_POINT);
+			Map<String, Object> responseMap = response.getContents();
+
+			//Then
+			assertEquals("Status code must be 400", response.getStatusCode(), 400);
+			List<String> errors = (List<String>) responseMap.get(ResponseField.ERROR.getLabel());
+			assertTrue("There must be only one error", errors.size() == 1);
+			assertTrue("The error must be bad n", errors.contains(Error.BAD_N.getLabel()));
+		}
+
+		@Test
+		public void badTimeoutErrorTest() {
+			//Given
+			Map<String, Object> requestMap = buildNthPrimeRequest(10);
+			requestMap.put(TIMEOUT_MS.getLabel(), "0");
+
+			//When
+			Response response = rc.sendRequest(new JSONSerializer().deepSerialize(requestMap), "POST",
+					RestClient.NTH_PRIME_END_POINT);
+			Map<String, Object> responseMap = response.getContents();
+
+			//Then
+			assertEquals("Status code must be 400", response.getStatusCode(), 400);
+			List<String> errors = (List<String>) responseMap.get(ResponseField.ERROR.getLabel());
+			assertTrue("There must be only one error", errors.size() == 1);
+			assertTrue("The error must be bad timeout", errors.contains(Error.BAD_TIMEOUT.getLabel()));
+		}
+
 		@Test
 		public void badJsonFormatTest() {
 			//Given
@@ -406,5 +676,113 @@ public class PrimeCalcServiceTest {
 			assertTrue("There must be only one error", errors.size() == 1);
 			assertTrue("The error must be bad request", errors.contains(Error.BAD_REQUEST.getLabel()));
 		}
+
+		@Test
+		public void binaryEncodingTest() throws IOException {
+			//Given
+			String payload = new JSONSerializer().deepSerialize(buildRequest(Method.SIEVE.name(), "121"));
+
+			//When
+			HttpURLConnection connection = rc.sendBinaryRequest(payload, "application/x-primes-int32");
+			ByteBuffer body;
+			try (InputStream in = connection.getInputStream()) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				int b;
+				while ((b = in.read()) != -1) {
+					bytes.write(b);
+				}
+				body = ByteBuffer.wrap(bytes.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+			}
+
+			//Then
+			assertEquals("Status code must be 200", 200, connection.getResponseCode());
+			assertEquals("The content type must be the encoding", "application/x-primes-int32",
+					connection.getContentType());
+			assertEquals("The count must be in a header", Integer.toString(primesTill121.size()),
+					connection.getHeaderField("X-Primes-Count"));
+			assertEquals("The limit must be in a header", "121", connection.getHeaderField("X-Limit"));
+			assertEquals("4 bytes a prime", primesTill121.size() * 4, body.remaining());
+			primesTill121.forEach(p -> assertEquals("The primes must be read back", (int) p, body.getInt()));
+		}
+
+		@Test
+		public void notAcceptableTest() throws IOException {
+			//Given
+			String payload = new JSONSerializer().deepSerialize(buildRequest(Method.SIEVE.name(), "121"));
+
+			//When
+			HttpURLConnection connection = rc.sendBinaryRequest(payload, "text/html");
+
+			//Then
+			assertEquals("Status code must be 406", 406, connection.getResponseCode());
+		}
+
+		@Test
+		public void batchTest() {
+			//Given
+			Map<String, Object> requestMap = buildBatchRequest(buildRequest(Method.SIEVE.name(), "7919"),
+					buildRequest(Method.SIEVE.name(), "121"),
+					buildRequest(Method.SIEVE.name(), "bad"),
+					buildRangeRequest(Method.COUNT.name(), "0", "7919"));
+
+			//When
+			Response response = rc.sendRequest(new JSONSerializer().deepSerialize(requestMap), "POST");
+			List<Map<String, Object>> results = (List<Map<String, Object>>) response.getContents()
+					.get(ResponseField.RESULTS.getLabel());
+
+			//Then
+			assertEquals("Status code must be 200", response.getStatusCode(), 200);
+			assertEquals("Every job must be answered", 4, results.size());
+			assertEquals("The primes up to 7919 must be answered", primesTill7919.size(),
+					((List<?>) results.get(0).get(ResponseField.PRIMES.getLabel())).size());
+			assertEquals("The primes up to 121 must be answered", primesTill121.size(),
+					((List<?>) results.get(1).get(ResponseField.PRIMES.getLabel())).size());
+			assertTrue("The bad job must be answered with its error",
+					results.get(2).get(ResponseField.ERROR.getLabel()).toString().contains(Error.BAD_LIMIT.name()));
+			assertEquals("The count must be answered", primesTill7919.size(),
+					((Number) results.get(3).get(ResponseField.COUNT.getLabel())).intValue());
+		}
+
+		@Test
+		public void badBatchTest() {
+			//Given
+			Map<String, Object> requestMap = new HashMap<>();
+			requestMap.put(RequestField.JOBS.getLabel(), Collections.emptyList());
+
+			//When
+			Response response = rc.sendRequest(new JSONSerializer().deepSerialize(requestMap), "POST");
+
+			//Then
+			assertEquals("Status code must be 400", response.getStatusCode(), 400);
+			assertTrue("The error must be BAD_JOBS", response.getContents().get(ResponseField.ERROR.getLabel())
+					.toString().contains(Error.BAD_JOBS.name()));
+		}
+
+		@Test
+		public void metricsTest() {
+			//Given, the latencies are recorded just after the responses are complete so the bad limit goes last
+			rc.sendRequest(new JSONSerializer().deepSerialize(buildNumbersRequest(Arrays.asList(7, 7919))), "POST",
+					RestClient.IS_PRIME_END_POINT);
+			rc.sendRequest(new JSONSerializer().deepSerialize(buildRequest(Method.SIEVE.name(), "12345")), "POST");
+			rc.sendRequest(new JSONSerializer().deepSerialize(buildRequest(Method.SIEVE.name(), "-1")), "POST");
+
+			//When
+			Response response = rc.sendRequest(null, "GET", RestClient.METRICS_END_POINT);
+			Map<String, Object> responseMap = response.getContents();
+
+			//Then
+			assertEquals("Status code must be 200", response.getStatusCode(), 200);
+			Map<String, Object> latency = (Map<String, Object>) responseMap.get("latency");
+			Map<String, Object> sieve = (Map<String, Object>) latency.get(Method.SIEVE.name());
+			Map<String, Object> decade = (Map<String, Object>) sieve.get("1e04");
+			assertTrue("The sieve request must be timed in its decade",
+					((Number) decade.get("count")).longValue() >= 1);
+			Map<String, Object> isPrime = (Map<String, Object>) latency.get(Metrics.IS_PRIME);
+			assertTrue("The primality check must be timed by its largest number", isPrime.containsKey("1e03"));
+			Map<String, Object> errors = (Map<String, Object>) responseMap.get("errors");
+			assertTrue("The bad limit must be counted", ((Number) errors.get(Error.BAD_LIMIT.name())).longValue() >= 1);
+			assertTrue("The gauges must be answered", responseMap.containsKey("inFlight")
+					&& responseMap.containsKey("computeQueueDepth") && responseMap.containsKey("memoryReservedBytes"));
+		}
 	}
 }
@@ -3,12 +3,12 @@ package com.therdl.prime.calc;
 
 import com.therdl.prime.calc.model.Response;
 import flexjson.JSONDeserializer;
-import sun.net.www.protocol.http.HttpURLConnection;
 
 import java.io.BufferedReader;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.Iterator;
 import java.util.List;
@@ -21,6 +21,9 @@ import java.util.Map;
 public class RestClient {
 
 	public static final String PRIME_CALC_END_POINT = "/v1/primeCalc";
+	public static final String IS_PRIME_END_POINT = "/v1/isPrime";
+	public static final String NTH_PRIME_END_POINT = "/v1/nthPrime";
+	public static final String METRICS_END_POINT = "/v1/metrics";
 	public static final String HOSTNAME = "localhost";
 	public static final String PORT = "8080";
 
@@ -35,7 +38,19 @@ public class RestClient {
 	 * @return the response received
 	 */
 	public Response sendRequest(String payload, String reqMethod) {
-		String fullUrl = "http://" + HOSTNAME + ":" + PORT + PRIME_CALC_END_POINT;
+		return sendRequest(payload, reqMethod, PRIME_CALC_END_POINT);
+	}
+
+	/**
+	 * Send the request with the given HTTP method to the given end point. Please note only POST and GET are supported
+	 *
+	 * @param payload   the request contents
+	 * @param reqMethod the request HTTP method
+	 * @param endPoint  the path of the end point
+	 * @return the response received
+	 */
+	public Response sendRequest(String payload, String reqMethod, String endPoint) {
+		String fullUrl = "http://" + HOSTNAME + ":" + PORT + endPoint;
 
 		System.out.println("\nSending " + reqMethod + " request to " + fullUrl);
 		System.out.println("parameters : " + payload);
@@ -108,6 +123,28 @@ public class RestClient {
 
 	}
 
+	/**
+	 * Send a POST request asking for the primes in the given encoding
+	 *
+	 * @param payload the request contents
+	 * @param accept  the Accept header
+	 * @return the connection, its response code, headers and body are read by the caller
+	 * @throws IOException if the request cannot be sent
+	 */
+	public HttpURLConnection sendBinaryRequest(String payload, String accept) throws IOException {
+		String fullUrl = "http://" + HOSTNAME + ":" + PORT + PRIME_CALC_END_POINT;
+		HttpURLConnection connection = (HttpURLConnection) new URL(fullUrl).openConnection();
+		connection.setRequestMethod("POST");
+		connection.setRequestProperty("User-Agent", USER_AGENT);
+		connection.setRequestProperty("Accept", accept);
+		connection.setRequestProperty("Content-type", "application/json; charset=UTF-8");
+		connection.setDoOutput(true);
+		DataOutputStream wr = new DataOutputStream(connection.getOutputStream());
+		wr.writeBytes(payload);
+		wr.close();
+		return connection;
+	}
+
 	private Response sendGet(String payload, String fullUrl) throws Exception {
 
 		URL url;
@@ -1,18 +1,39 @@
 package com.therdl.prime.calc;
 
+import com.therdl.prime.calc.alg.MemoryGovernor;
+import com.therdl.prime.calc.alg.Primes;
+import com.therdl.prime.calc.alg.Scheduler;
+
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import static com.therdl.prime.calc.model.RequestField.FROM;
+import static com.therdl.prime.calc.model.RequestField.JOBS;
 import static com.therdl.prime.calc.model.RequestField.LIMIT;
 import static com.therdl.prime.calc.model.RequestField.METHOD;
+import static com.therdl.prime.calc.model.RequestField.N;
+import static com.therdl.prime.calc.model.RequestField.NUMBERS;
+import static com.therdl.prime.calc.model.RequestField.TO;
 
 /**
  * Created by Alex on 24/04/2016.
  */
 public class TestUtil {
 
+	/**
+	 * The pool the algorithms under test share, a thread per core
+	 */
+	public static final Scheduler SCHEDULER = new Scheduler(0);
+
+	/**
+	 * The memory the algorithms under test share, half of the heap
+	 */
+	public static final MemoryGovernor GOVERNOR = new MemoryGovernor(0, 16);
+
 	public static final List<Integer> primesTill121 = Arrays.asList(
 			2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53, 59, 61, 67, 71, 73, 79, 83, 89, 97, 101, 103,
 			107, 109, 113);
@@ -118,11 +139,60 @@ public class TestUtil {
 			7727,7741,7753,7757,7759,7789,7793,7817,7823,7829,
 			7841,7853,7867,7873,7877,7879,7883,7901,7907,7919 );
 
+	//the primes from 10^15 to 10^15 + 300
+	public static final List<Long> primesFrom1e15To1e15Plus300 = Arrays.asList(
+			1000000000000037L, 1000000000000091L, 1000000000000159L, 1000000000000187L, 1000000000000223L,
+			1000000000000241L, 1000000000000249L, 1000000000000259L, 1000000000000273L, 1000000000000279L,
+			1000000000000297L);
+
 	public static Map<String, Object> buildRequest(String method, Object limit) {
 		Map<String, Object> requestMap = new HashMap<>();
 		requestMap.put(METHOD.getLabel(), method);
 		requestMap.put(LIMIT.getLabel(), limit);
 		return requestMap;
 	}
-}
 
+	public static Map<String, Object> buildRangeRequest(String method, Object from, Object to) {
+		Map<String, Object> requestMap = new HashMap<>();
+		requestMap.put(METHOD.getLabel(), method);
+		requestMap.put(FROM.getLabel(), from);
+		requestMap.put(TO.getLabel(), to);
+		return requestMap;
+	}
+
+	public static Map<String, Object> buildNumbersRequest(Object numbers) {
+		Map<String, Object> requestMap = new HashMap<>();
+		requestMap.put(NUMBERS.getLabel(), numbers);
+		return requestMap;
+	}
+
+	@SafeVarargs
+	public static Map<String, Object> buildBatchRequest(Map<String, Object>... jobs) {
+		Map<String, Object> requestMap = new HashMap<>();
+		requestMap.put(JOBS.getLabel(), Arrays.asList(jobs));
+		return requestMap;
+	}
+
+	public static Map<String, Object> buildNthPrimeRequest(Object n) {
+		Map<String, Object> requestMap = new HashMap<>();
+		requestMap.put(N.getLabel(), n);
+		return requestMap;
+	}
+
+	/**
+	 * @param primes the primes to copy
+	 * @return the primes as a list, to compare them by value
+	 */
+	public static List<Long> toList(Primes primes) {
+		List<Long> list = new ArrayList<>();
+		primes.forEachLong(list::add);
+		return list;
+	}
+
+	/**
+	 * @return the deadline of a request given the default timeout of 5 seconds from now
+	 */
+	public static long deadline() {
+		return System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+	}
+}
@@ -0,0 +1,167 @@
+package com.therdl.prime.calc.alg;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that requests covered by a running flight subscribe to it and get their part as soon as it is final, that
+ * a timeout hands back the final prefix and that the subscribers of an abandoned flight compute their part themselves
+ */
+public class FlightsTest {
+
+	@Test
+	public void prefixSubscriberTest() throws Exception {
+		//Given
+		Flights flights = new Flights();
+		AtomicInteger computations = new AtomicInteger();
+		CountDownLatch prefixAppended = new CountDownLatch(1);
+		CountDownLatch prefixAnswered = new CountDownLatch(1);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try {
+			//When
+			Future<Primes> leader = executor.submit(() -> flights.run(0, 100, deadline, flight -> {
+				computations.incrementAndGet();
+				flight.append(primes(2, 3, 5, 7), 10);
+				prefixAppended.countDown();
+				//the rest of the range only becomes final once the prefix subscriber has its answer
+				prefixAnswered.await();
+				flight.append(primes(11, 13, 97), 100);
+			}));
+			prefixAppended.await();
+			Future<Primes> subscriber = executor.submit(() -> flights.run(3, 10, deadline, flight -> {
+				computations.incrementAndGet();
+			}));
+			Primes prefix = subscriber.get(5, TimeUnit.SECONDS);
+			assertFalse("The leader must still be running", leader.isDone());
+			prefixAnswered.countDown();
+
+			//Then
+			assertEquals("The prefix must be sliced from the flight", 3, prefix.size());
+			assertEquals("The prefix must start at 3", 3, prefix.first());
+			assertEquals("The leader must get the whole range", 7, leader.get(5, TimeUnit.SECONDS).size());
+			assertEquals("There must be a single computation", 1, computations.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void abandonedFlightTest() throws Exception {
+		//Given
+		Flights flights = new Flights();
+		AtomicInteger computations = new AtomicInteger();
+		CountDownLatch prefixAppended = new CountDownLatch(1);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try {
+			//When
+			Future<Primes> leader = executor.submit(() -> flights.run(0, 100, deadline, flight -> {
+				computations.incrementAndGet();
+				flight.append(primes(2, 3, 5, 7), 10);
+				prefixAppended.countDown();
+				//gives the subscriber the time to wait for the rest before the leader's client goes away
+				Thread.sleep(100);
+				throw new InterruptedException();
+			}));
+			prefixAppended.await();
+			Future<Primes> subscriber = executor.submit(() -> flights.run(3, 20, deadline, flight -> {
+				computations.incrementAndGet();
+				flight.append(primes(3, 5, 7, 11, 13, 17, 19), 20);
+			}));
+
+			//Then
+			try {
+				leader.get(5, TimeUnit.SECONDS);
+				fail("The leader must not get its primes");
+			} catch (ExecutionException e) {
+				assertTrue("The leader must be interrupted", e.getCause() instanceof InterruptedException);
+			}
+			assertEquals("The subscriber must compute its range itself", 7, subscriber.get(5, TimeUnit.SECONDS).size());
+			assertEquals("There must be a computation for each", 2, computations.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void failedFlightTest() throws Exception {
+		//Given
+		Flights flights = new Flights();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		Flight flight = new Flight(0, 100, deadline);
+
+		//When
+		flight.append(primes(2, 3, 5, 7), 10);
+		flight.fail(new TimeoutException("Processing timed out"));
+		try {
+			flights.run(0, 100, deadline, running -> {
+				throw new TimeoutException("Processing timed out");
+			});
+		} catch (TimeoutException e) {
+			//expected
+		}
+
+		//Then
+		assertEquals("The final prefix must still be answered", 2, flight.await(0, 4, deadline).size());
+		assertTrue("The rest must time out with the computation", timedOut(flight, 50, deadline));
+		Primes after = flights.run(0, 10, deadline, running -> running.append(primes(2, 3, 5, 7), 10));
+		assertEquals("A new flight must start once the failed one is gone", 4, after.size());
+	}
+
+	@Test
+	public void partialResultTest() throws Exception {
+		//Given
+		Flights flights = new Flights();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		PartialResultException partial = null;
+
+		//When
+		try {
+			flights.run(0, 100, deadline, flight -> {
+				flight.append(primes(2, 3, 5, 7, 11), 12);
+				throw new TimeoutException("Processing timed out");
+			});
+		} catch (PartialResultException e) {
+			partial = e;
+		}
+
+		//Then
+		assertNotNull("The timeout must carry the proven prefix", partial);
+		assertEquals("The prefix must hold the primes up to 12", 5, partial.getPrimes().size());
+		assertEquals("The prefix must be complete up to 12", 12, partial.getCompleteUpTo());
+	}
+
+	private static boolean timedOut(Flight flight, long to, long deadline) throws InterruptedException {
+		try {
+			flight.await(0, to, deadline);
+			return false;
+		} catch (TimeoutException e) {
+			return true;
+		}
+	}
+
+	private static Primes primes(long... values) {
+		Primes primes = new Primes();
+		for (long value : values) {
+			primes.add(value);
+		}
+		return primes;
+	}
+}
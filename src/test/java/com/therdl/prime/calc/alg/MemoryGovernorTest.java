@@ -0,0 +1,126 @@
+package com.therdl.prime.calc.alg;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a computation falls back to a smaller footprint when only that fits, waits when not even that fits and
+ * is turned away once the waiting queue is full, and that memory already allocated is accounted for without waiting
+ */
+public class MemoryGovernorTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	public void fallbackTest() throws TimeoutException, InterruptedException {
+		//Given
+		MemoryGovernor governor = new MemoryGovernor(1000, 1);
+		long deadline = System.nanoTime() + 5 * SECOND;
+		MemoryGovernor.Reservation first = governor.reserve(100, 600, deadline);
+
+		//When
+		MemoryGovernor.Reservation second = governor.reserve(100, 600, deadline);
+
+		//Then
+		assertEquals("The first computation must get all it asked for", 600, first.getBytes());
+		assertEquals("The second computation must get what is left", 400, second.getBytes());
+		assertEquals("The fallback must be counted", 1, governor.getFallbacks());
+		assertEquals("There must be no headroom left", 0, governor.getHeadroom());
+		first.close();
+		second.close();
+		second.close();
+		assertEquals("The memory must be released once", 0, governor.getReserved());
+		assertEquals("The peak must be kept", 1000, governor.getPeakReserved());
+	}
+
+	@Test
+	public void waitTest() throws Exception {
+		//Given
+		MemoryGovernor governor = new MemoryGovernor(1000, 1);
+		long deadline = System.nanoTime() + 5 * SECOND;
+		MemoryGovernor.Reservation held = governor.reserve(800, 800, deadline);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+
+		try {
+			//When
+			Future<MemoryGovernor.Reservation> waiter = executor.submit(() -> governor.reserve(300, 300, deadline));
+			while (governor.getWaiting() == 0) {
+				Thread.sleep(1);
+			}
+			RejectedExecutionException rejected = rejected(governor, deadline);
+			assertFalse("The computation must wait while the memory is held", waiter.isDone());
+			held.close();
+
+			//Then
+			assertNotNull("A computation must be turned away once the queue is full", rejected);
+			assertEquals("The rejection must be counted", 1, governor.getRejections());
+			assertEquals("The waiting computation must get its memory once released", 300,
+					waiter.get(5, TimeUnit.SECONDS).getBytes());
+			assertEquals("Only the waiting computation must hold memory", 1, governor.getReservations());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void timeoutTest() throws TimeoutException, InterruptedException {
+		//Given
+		MemoryGovernor governor = new MemoryGovernor(1000, 1);
+		governor.reserve(1000, 1000, System.nanoTime() + 5 * SECOND);
+
+		//When
+		boolean timedOut = false;
+		try {
+			governor.reserve(1, 1, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50));
+		} catch (TimeoutException e) {
+			timedOut = true;
+		}
+
+		//Then
+		assertTrue("The computation must time out waiting for memory", timedOut);
+		assertEquals("The computation must no longer wait", 0, governor.getWaiting());
+	}
+
+	@Test
+	public void accountTest() throws TimeoutException, InterruptedException {
+		//Given
+		MemoryGovernor governor = new MemoryGovernor(1000, 1);
+		governor.reserve(800, 800, System.nanoTime() + 5 * SECOND);
+
+		//When
+		MemoryGovernor.Reservation held = governor.account(400);
+		boolean timedOut = false;
+		try {
+			governor.reserve(1, 1, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50));
+		} catch (TimeoutException e) {
+			timedOut = true;
+		}
+
+		//Then
+		assertEquals("Memory already allocated must be accounted for over the budget", 1200, governor.getReserved());
+		assertTrue("The computations after it must wait for it", timedOut);
+		held.close();
+		assertEquals("The memory must be released", 800, governor.getReserved());
+	}
+
+	private static RejectedExecutionException rejected(MemoryGovernor governor, long deadline)
+			throws TimeoutException, InterruptedException {
+		try {
+			governor.reserve(300, 300, deadline);
+			return null;
+		} catch (RejectedExecutionException e) {
+			return e;
+		}
+	}
+}
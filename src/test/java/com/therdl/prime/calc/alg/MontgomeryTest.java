@@ -0,0 +1,43 @@
+package com.therdl.prime.calc.alg;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the Montgomery arithmetic against {@link BigInteger} for moduli across the 64 bit range
+ */
+public class MontgomeryTest {
+
+	@Test
+	public void sameAsBigIntegerTest() {
+		//Given
+		Random random = new Random(42);
+		long[] moduli = {3, 1000003, 4294967311L, 1000000000000000003L, Long.MAX_VALUE};
+
+		for (long n : moduli) {
+			Montgomery mod = new Montgomery(n);
+			BigInteger bigN = BigInteger.valueOf(n);
+			for (int i = 0; i < 1000; i++) {
+				long a = (random.nextLong() >>> 1) % n;
+				long b = (random.nextLong() >>> 1) % n;
+				BigInteger bigA = BigInteger.valueOf(a);
+				BigInteger bigB = BigInteger.valueOf(b);
+
+				//When
+				long product = mod.fromMontgomery(mod.multiply(mod.toMontgomery(a), mod.toMontgomery(b)));
+				long power = mod.fromMontgomery(mod.pow(mod.toMontgomery(a), b));
+
+				//Then
+				assertEquals("The product must match", bigA.multiply(bigB).mod(bigN).longValue(), product);
+				assertEquals("The power must match", bigA.modPow(bigB, bigN).longValue(), power);
+				assertEquals("The sum must match", bigA.add(bigB).mod(bigN).longValue(), mod.add(a, b));
+				assertEquals("The difference must match", bigA.subtract(bigB).mod(bigN).longValue(),
+						mod.subtract(a, b));
+			}
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package com.therdl.prime.calc.alg.count;
+
+import com.therdl.prime.calc.alg.sieve.PrimeCache;
+import com.therdl.prime.calc.alg.sieve.PrimeTable;
+import com.therdl.prime.calc.alg.sieve.SieveAlg;
+import org.junit.Test;
+
+import java.util.concurrent.TimeoutException;
+
+import static com.therdl.prime.calc.TestUtil.GOVERNOR;
+import static com.therdl.prime.calc.TestUtil.SCHEDULER;
+import static com.therdl.prime.calc.TestUtil.deadline;
+import static com.therdl.prime.calc.TestUtil.primesTill7919;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the n-th primes against the known ones, whether the estimate lands below or above them
+ */
+public class NthPrimeAlgTest {
+
+	@Test
+	public void knownPrimesTest() throws TimeoutException, InterruptedException {
+		//Given
+		NthPrimeAlg nthPrimeAlg = new NthPrimeAlg(new PrimeCountAlg(SCHEDULER, GOVERNOR),
+				new SieveAlg(new PrimeCache(0), new PrimeTable(""), SCHEDULER, GOVERNOR));
+		long[] positions = {1000000, 100000000, 1000000000};
+		long[] primes = {15485863, 2038074743, 22801763489L};
+
+		//Then
+		for (int n = 1; n <= primesTill7919.size(); n++) {
+			assertEquals("The prime must be number " + n, (long) primesTill7919.get(n - 1),
+					nthPrimeAlg.process(n, deadline()));
+		}
+		for (int i = 0; i < positions.length; i++) {
+			assertEquals("The prime must be number " + positions[i], primes[i],
+					nthPrimeAlg.process(positions[i], deadline()));
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package com.therdl.prime.calc.alg.count;
+
+import com.therdl.prime.calc.alg.sieve.PrimeCache;
+import com.therdl.prime.calc.alg.sieve.PrimeTable;
+import com.therdl.prime.calc.alg.sieve.SieveAlg;
+import org.junit.Test;
+
+import java.util.concurrent.TimeoutException;
+
+import static com.therdl.prime.calc.TestUtil.GOVERNOR;
+import static com.therdl.prime.calc.TestUtil.SCHEDULER;
+import static com.therdl.prime.calc.TestUtil.deadline;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the prime counts against the known values of pi(x) and the sieve
+ */
+public class PrimeCountAlgTest {
+
+	@Test
+	public void knownCountsTest() throws TimeoutException, InterruptedException {
+		//Given
+		PrimeCountAlg primeCountAlg = new PrimeCountAlg(SCHEDULER, GOVERNOR);
+		long[] limits = {0, 1, 2, 3, 10, 100, 1000, 1000000, 1000000000, 10000000000L, 100000000000L};
+		long[] counts = {0, 0, 1, 2, 4, 25, 168, 78498, 50847534, 455052511, 4118054813L};
+
+		//Then
+		for (int i = 0; i < limits.length; i++) {
+			assertEquals("The count must be pi(" + limits[i] + ")", counts[i],
+					primeCountAlg.process(0, limits[i], deadline()));
+		}
+	}
+
+	@Test
+	public void sameAsSieveTest() throws TimeoutException, InterruptedException {
+		//Given
+		PrimeCountAlg primeCountAlg = new PrimeCountAlg(SCHEDULER, GOVERNOR);
+		SieveAlg sieveAlg = new SieveAlg(new PrimeCache(0), new PrimeTable(""), SCHEDULER, GOVERNOR);
+		long from = 4000000000L;
+		long to = 4001000000L;
+
+		//When
+		long count = primeCountAlg.process(from, to, deadline());
+
+		//Then
+		assertEquals("The count must be the number of sieved primes", sieveAlg.process(from, to, deadline()).size(),
+				count);
+		assertEquals("The bounds must be inclusive", 1, primeCountAlg.process(7, 7, deadline()));
+		assertEquals("An empty range has no primes", 0, primeCountAlg.process(24, 28, deadline()));
+	}
+}
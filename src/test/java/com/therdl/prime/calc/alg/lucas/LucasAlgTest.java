@@ -0,0 +1,57 @@
+package com.therdl.prime.calc.alg.lucas;
+
+import com.therdl.prime.calc.alg.Primes;
+import com.therdl.prime.calc.alg.sieve.PrimeCache;
+import com.therdl.prime.calc.alg.sieve.PrimeTable;
+import com.therdl.prime.calc.alg.sieve.SieveAlg;
+import org.junit.Test;
+
+import java.util.concurrent.TimeoutException;
+
+import static com.therdl.prime.calc.TestUtil.GOVERNOR;
+import static com.therdl.prime.calc.TestUtil.SCHEDULER;
+import static com.therdl.prime.calc.TestUtil.deadline;
+import static com.therdl.prime.calc.TestUtil.primesFrom1e15To1e15Plus300;
+import static com.therdl.prime.calc.TestUtil.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the modular Lucas test and the Lucas filter against the sieve
+ */
+public class LucasAlgTest {
+
+	private final SieveAlg sieveAlg = new SieveAlg(new PrimeCache(0), new PrimeTable(""), SCHEDULER, GOVERNOR);
+
+	@Test
+	public void lucasTest() {
+		//Given
+		long[] pseudoPrimes = {705, 2465, 2737, 3745, 4181, 5777, 6721, 10877};
+		long largePrime = 999999999999999989L;
+
+		//Then
+		for (long pseudoPrime : pseudoPrimes) {
+			assertTrue("Lucas pseudo primes must pass the test: " + pseudoPrime, Lucas.isProbablePrime(pseudoPrime));
+		}
+		assertTrue("Primes must pass the test", Lucas.isProbablePrime(largePrime));
+		assertFalse("Composites must fail the test", Lucas.isProbablePrime(largePrime - 2));
+		assertFalse("Composites must fail the test", Lucas.isProbablePrime(9));
+	}
+
+	@Test
+	public void sameAsSieveTest() throws TimeoutException, InterruptedException {
+		//Given
+		//small batches so they get verified out of order
+		LucasAlg lucasAlg = new LucasAlg(sieveAlg, SCHEDULER, GOVERNOR, 16, 4);
+
+		//When
+		Primes lucasPrimes = lucasAlg.process(0, 300000, deadline());
+		Primes highPrimes = lucasAlg.process(1000000000000000L, 1000000000000300L, deadline());
+
+		//Then
+		assertEquals("Primes must be the sieved ones", toList(sieveAlg.process(0, 300000, deadline())),
+				toList(lucasPrimes));
+		assertEquals("Primes must be the ones in the high window", primesFrom1e15To1e15Plus300, toList(highPrimes));
+	}
+}
@@ -0,0 +1,56 @@
+package com.therdl.prime.calc.alg.millerrabin;
+
+import com.therdl.prime.calc.alg.Primes;
+import com.therdl.prime.calc.alg.sieve.PrimeCache;
+import com.therdl.prime.calc.alg.sieve.PrimeTable;
+import com.therdl.prime.calc.alg.sieve.SieveAlg;
+import org.junit.Test;
+
+import java.util.concurrent.TimeoutException;
+
+import static com.therdl.prime.calc.TestUtil.GOVERNOR;
+import static com.therdl.prime.calc.TestUtil.SCHEDULER;
+import static com.therdl.prime.calc.TestUtil.deadline;
+import static com.therdl.prime.calc.TestUtil.primesFrom1e15To1e15Plus300;
+import static com.therdl.prime.calc.TestUtil.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the Miller-Rabin test against known strong pseudo primes and the algorithm against the sieve
+ */
+public class MillerRabinAlgTest {
+
+	@Test
+	public void millerRabinTest() {
+		//Given
+		long[] strongPseudoPrimes = {2047, 1373653, 25326001, 3215031751L, 2152302898747L, 3474749660383L,
+				341550071728321L, 3825123056546413051L};
+		long largePrime = 999999999999999989L;
+
+		//Then
+		for (long pseudoPrime : strongPseudoPrimes) {
+			assertFalse("Strong pseudo primes must fail the test: " + pseudoPrime, MillerRabin.isPrime(pseudoPrime));
+		}
+		assertFalse("Carmichael numbers must fail the test", MillerRabin.isPrime(561));
+		assertTrue("Primes must pass the test", MillerRabin.isPrime(largePrime));
+		assertTrue("Primes must pass the test", MillerRabin.isPrime(Long.MAX_VALUE - 24));
+		assertFalse("Composites must fail the test", MillerRabin.isPrime(largePrime - 2));
+	}
+
+	@Test
+	public void sameAsSieveTest() throws TimeoutException, InterruptedException {
+		//Given
+		MillerRabinAlg millerRabinAlg = new MillerRabinAlg(SCHEDULER, GOVERNOR);
+		SieveAlg sieveAlg = new SieveAlg(new PrimeCache(0), new PrimeTable(""), SCHEDULER, GOVERNOR);
+
+		//When
+		Primes primes = millerRabinAlg.process(0, 300000, deadline());
+		Primes highPrimes = millerRabinAlg.process(1000000000000000L, 1000000000000300L, deadline());
+
+		//Then
+		assertEquals("Primes must be the sieved ones", toList(sieveAlg.process(0, 300000, deadline())), toList(primes));
+		assertEquals("Primes must be the ones in the high window", primesFrom1e15To1e15Plus300, toList(highPrimes));
+	}
+}
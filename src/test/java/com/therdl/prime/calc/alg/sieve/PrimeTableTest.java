@@ -0,0 +1,127 @@
+package com.therdl.prime.calc.alg.sieve;
+
+import com.therdl.prime.calc.alg.Primes;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeoutException;
+
+import static com.therdl.prime.calc.TestUtil.GOVERNOR;
+import static com.therdl.prime.calc.TestUtil.SCHEDULER;
+import static com.therdl.prime.calc.TestUtil.deadline;
+import static com.therdl.prime.calc.TestUtil.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks the {@link PrimeTable} file survives a round trip, is appended to and serves the same primes as the sieve
+ */
+public class PrimeTableTest {
+
+	//a little over two blocks so ranges go across block boundaries
+	private static final long LIMIT = 2 * Sieve.SEGMENT_SIZE + 12345;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void writtenThenMappedTest() throws Exception {
+		//Given
+		String path = new File(folder.getRoot(), "primes.table").getPath();
+		Primes sieved = sieve(0, LIMIT);
+		new PrimeTable(path).write(0, LIMIT, sieved);
+
+		//When
+		PrimeTable table = new PrimeTable(path);
+
+		//Then
+		assertEquals("The table must go up to the limit", LIMIT, table.getLimit());
+		assertEquals("The table must hold every prime", toList(sieved), toList(table.get(0, LIMIT)));
+		long from = Sieve.SEGMENT_SIZE - 1000;
+		long to = Sieve.SEGMENT_SIZE + 1000;
+		assertEquals("The window must be served across blocks", toList(sieve(from, to)), toList(table.get(from, to)));
+		assertEquals("The count must be the number of primes", sieved.size(), table.count(LIMIT));
+		assertEquals("The count must be the number of primes", sieve(0, to).size(), table.count(to));
+		assertNull("Ranges above the table must not be served", table.get(0, LIMIT + 1));
+		Primes mapped = table.get(from, to);
+		assertEquals("The last prime must be the one of the window", sieve(from, to).last(), mapped.last());
+		assertEquals("The primes must be looked up by index", sieve(from, to).get(100), mapped.get(100));
+	}
+
+	@Test
+	public void sieveServedFromTableTest() throws Exception {
+		//Given
+		String path = new File(folder.getRoot(), "primes.table").getPath();
+		new PrimeTable(path).write(0, LIMIT, sieve(0, LIMIT));
+		PrimeCache cache = new PrimeCache(0);
+		SieveAlg sieveAlg = new SieveAlg(cache, new PrimeTable(path), SCHEDULER, GOVERNOR);
+
+		//When
+		Primes window = sieveAlg.process(1000, 2000, deadline());
+
+		//Then
+		assertEquals("Primes must be the ones in the window", toList(sieve(1000, 2000)), toList(window));
+		assertEquals("The cache must not be used", 0, cache.getMisses() + cache.getHits());
+	}
+
+	@Test
+	public void appendedTest() throws Exception {
+		//Given
+		String path = new File(folder.getRoot(), "primes.table").getPath();
+		long half = Sieve.SEGMENT_SIZE + 777;
+		new PrimeTable(path).write(0, half, sieve(0, half));
+		PrimeTable before = new PrimeTable(path);
+
+		//When
+		before.write(half + 1, LIMIT, sieve(half + 1, LIMIT));
+		PrimeTable after = new PrimeTable(path);
+
+		//Then
+		assertEquals("The table must go up to the new limit", LIMIT, after.getLimit());
+		assertEquals("The table must hold every prime", toList(sieve(0, LIMIT)), toList(after.get(0, LIMIT)));
+		assertEquals("The count must go across the appended blocks", sieve(0, LIMIT).size(), after.count(LIMIT));
+		assertEquals("The old mapping must still serve its range", toList(sieve(0, half)),
+				toList(before.get(0, half)));
+	}
+
+	@Test
+	public void otherFormatReplacedTest() throws Exception {
+		//Given
+		File file = new File(folder.getRoot(), "primes.table");
+		Files.write(file.toPath(), new byte[4096]);
+		PrimeTable table = new PrimeTable(file.getPath());
+
+		//When
+		table.write(0, LIMIT, sieve(0, LIMIT));
+		table.open();
+
+		//Then
+		assertEquals("The file must be written again", LIMIT, table.getLimit());
+		assertEquals("The count must be the number of primes", sieve(0, LIMIT).size(), table.count(LIMIT));
+	}
+
+	@Test
+	public void cacheSeededTest() throws Exception {
+		//Given
+		String path = new File(folder.getRoot(), "primes.table").getPath();
+		new PrimeTable(path).write(0, LIMIT, sieve(0, LIMIT));
+		PrimeCache cache = new PrimeCache(16 * 1024 * 1024);
+
+		//When
+		SieveAlg sieveAlg = new SieveAlg(cache, new PrimeTable(path), SCHEDULER, GOVERNOR);
+		Primes above = sieveAlg.process(LIMIT - 1000, LIMIT + 1000, deadline());
+
+		//Then
+		assertEquals("Primes must be the ones in the window", toList(sieve(LIMIT - 1000, LIMIT + 1000)),
+				toList(above));
+		assertEquals("The cache must only be extended above the table", LIMIT + 1000, cache.getHighWater());
+		assertEquals("The cache must be extended once", 1, cache.getExtensions());
+	}
+
+	private static Primes sieve(long from, long to) throws TimeoutException, InterruptedException {
+		return new SieveAlg(new PrimeCache(0), new PrimeTable(""), SCHEDULER, GOVERNOR).process(from, to, deadline());
+	}
+}
@@ -0,0 +1,78 @@
+package com.therdl.prime.calc.alg.sieve;
+
+import com.therdl.prime.calc.alg.Primes;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static com.therdl.prime.calc.TestUtil.GOVERNOR;
+import static com.therdl.prime.calc.TestUtil.SCHEDULER;
+import static com.therdl.prime.calc.TestUtil.deadline;
+import static com.therdl.prime.calc.TestUtil.primesTill7919;
+import static com.therdl.prime.calc.TestUtil.toList;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the segmented sieve against the known primes and the way it uses the {@link PrimeCache}
+ */
+public class SieveAlgTest {
+
+	@Test
+	public void cacheExtendedThenSlicedTest() throws TimeoutException, InterruptedException {
+		//Given
+		PrimeCache cache = new PrimeCache(1024 * 1024);
+		SieveAlg sieveAlg = new SieveAlg(cache, new PrimeTable(""), SCHEDULER, GOVERNOR);
+
+		//When
+		Primes upTo5000 = sieveAlg.process(0, 5000, deadline());
+		Primes upTo7919 = sieveAlg.process(0, 7919, deadline());
+		Primes window = sieveAlg.process(1000, 2000, deadline());
+
+		//Then
+		assertEquals("Primes must be the ones up to 5000", expected(0, 5000), toList(upTo5000));
+		assertEquals("Primes must be the ones up to 7919", primesTill7919.stream().map(Integer::longValue)
+				.collect(Collectors.toList()), toList(upTo7919));
+		assertEquals("Primes must be the ones in the window", expected(1000, 2000), toList(window));
+		assertEquals("The cache must have been extended twice", 2, cache.getExtensions());
+		assertEquals("The window must be a hit", 1, cache.getHits());
+		assertEquals("The first two must be misses", 2, cache.getMisses());
+		assertEquals("The cache must go up to 7919", 7919, cache.getHighWater());
+	}
+
+	@Test
+	public void cacheCeilingTest() throws TimeoutException, InterruptedException {
+		//Given
+		PrimeCache cache = new PrimeCache(0);
+		SieveAlg sieveAlg = new SieveAlg(cache, new PrimeTable(""), SCHEDULER, GOVERNOR);
+
+		//When
+		Primes window = sieveAlg.process(7000, 7919, deadline());
+
+		//Then
+		assertEquals("Primes must be the ones in the window", expected(7000, 7919), toList(window));
+		assertEquals("The cache must not grow above its ceiling", 0, cache.getExtensions());
+		assertEquals("The cache must stay empty", 0, cache.getBytes());
+	}
+
+	@Test
+	public void highWindowNotCachedTest() throws TimeoutException, InterruptedException {
+		//Given
+		PrimeCache cache = new PrimeCache(1024 * 1024);
+		SieveAlg sieveAlg = new SieveAlg(cache, new PrimeTable(""), SCHEDULER, GOVERNOR);
+
+		//When
+		Primes window = sieveAlg.process(7000, 7919, deadline());
+
+		//Then
+		assertEquals("Primes must be the ones in the window", expected(7000, 7919), toList(window));
+		assertEquals("A window far above the high water mark must not extend the cache", 0, cache.getExtensions());
+		assertEquals("The cache must stay empty", 0, cache.getBytes());
+	}
+
+	private static List<Long> expected(long from, long to) {
+		return primesTill7919.stream().filter(p -> p >= from && p <= to).map(Integer::longValue)
+				.collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,82 @@
+package com.therdl.prime.calc.api;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Checks that requests are shed once the backlog or the memory held leaves no room for them, and admitted again
+ * once the earlier ones are done
+ */
+public class AdmissionTest {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	public void tooBusyTest() throws RejectedException {
+		//Given
+		Admission admission = new Admission(1000);
+		long deadline = System.nanoTime() + 5 * SECOND;
+		Admission.Ticket first = admission.admit(new Cost(4 * SECOND, 0, false), deadline);
+
+		//When
+		RejectedException rejected = rejected(admission, new Cost(2 * SECOND, 0, false), deadline);
+		first.close();
+		first.close();
+
+		//Then
+		assertNotNull("The request must be shed behind the backlog", rejected);
+		assertEquals("The request must be shed as too busy", Error.TOO_BUSY, rejected.getError());
+		assertEquals("The retry must wait for the backlog", 4, rejected.getRetryAfter());
+		assertNotNull("The request must be admitted once the backlog is done",
+				admission.admit(new Cost(2 * SECOND, 0, false), deadline));
+	}
+
+	@Test
+	public void partialTest() throws RejectedException {
+		//Given
+		Admission admission = new Admission(1000);
+		long deadline = System.nanoTime() + 5 * SECOND;
+		admission.admit(new Cost(2 * SECOND, 0, true), deadline);
+
+		//When
+		Admission.Ticket admitted = admission.admit(new Cost(5 * SECOND, 0, true), deadline);
+		RejectedException rejected = rejected(admission, new Cost(SECOND, 0, true), deadline);
+
+		//Then
+		assertNotNull("A request with half its time left must be admitted", admitted);
+		assertNotNull("A request with less than half its time left must be shed", rejected);
+		assertEquals("The retry must wait for the backlog", 7, rejected.getRetryAfter());
+	}
+
+	@Test
+	public void overloadedTest() throws RejectedException {
+		//Given
+		Admission admission = new Admission(1000);
+		long deadline = System.nanoTime() + 5 * SECOND;
+		Admission.Ticket large = admission.admit(new Cost(0, 5000, true), deadline);
+
+		//When
+		RejectedException rejected = rejected(admission, new Cost(0, 300, true), deadline);
+		large.close();
+
+		//Then
+		assertNotNull("The request must be shed while the memory is held", rejected);
+		assertEquals("The request must be shed as overloaded", Error.OVERLOADED, rejected.getError());
+		assertEquals("The retry must wait at least a second", 1, rejected.getRetryAfter());
+		assertNotNull("The request must be admitted once the memory is released",
+				admission.admit(new Cost(0, 300, true), deadline));
+	}
+
+	private static RejectedException rejected(Admission admission, Cost cost, long deadline) {
+		try {
+			admission.admit(cost, deadline);
+			return null;
+		} catch (RejectedException e) {
+			return e;
+		}
+	}
+}
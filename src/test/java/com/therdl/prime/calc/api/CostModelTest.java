@@ -0,0 +1,92 @@
+package com.therdl.prime.calc.api;
+
+import com.therdl.prime.calc.alg.Scheduler;
+import com.therdl.prime.calc.alg.sieve.PrimeCache;
+import com.therdl.prime.calc.alg.sieve.PrimeTable;
+import com.therdl.prime.calc.alg.sieve.SieveAlg;
+import com.therdl.prime.calc.model.Method;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.therdl.prime.calc.TestUtil.GOVERNOR;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the estimates follow the costs of the algorithms and that the listing methods are capped by their deadline
+ */
+public class CostModelTest {
+
+	private static final Scheduler SCHEDULER = new Scheduler(1);
+
+	private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+	private final CostModel costModel = new CostModel(SCHEDULER,
+			new SieveAlg(new PrimeCache(0), new PrimeTable(""), SCHEDULER, GOVERNOR), 1.0, 1000);
+
+	@Test
+	public void methodCostTest() {
+		//Given
+		long from = 1_000_000_000_000L;
+		long to = from + 1_000_000;
+
+		//When
+		Cost sieve = costModel.estimate(Method.SIEVE, from, to, MINUTE);
+		Cost millerRabin = costModel.estimate(Method.MILLER_RABIN, from, to, MINUTE);
+		Cost lucas = costModel.estimate(Method.LUCAS_FILTER, from, to, MINUTE);
+		Cost count = costModel.estimate(Method.COUNT, 0, to, MINUTE);
+
+		//Then
+		assertTrue("The sieve must be the cheapest", sieve.getNanos() < millerRabin.getNanos());
+		assertTrue("Trial division must make Lucas the most expensive high up",
+				millerRabin.getNanos() < lucas.getNanos());
+		assertTrue("The primes found must be held", sieve.getBytes() > 0);
+		assertFalse("COUNT must not answer partially", count.isPartial());
+	}
+
+	@Test
+	public void lucasThreadsTest() {
+		//Given
+		Scheduler scheduler = new Scheduler(4);
+		CostModel parallel = new CostModel(scheduler,
+				new SieveAlg(new PrimeCache(0), new PrimeTable(""), scheduler, GOVERNOR), 1.0, 1000);
+		long to = 1_000_000;
+
+		//When
+		Cost serial = costModel.estimate(Method.LUCAS_FILTER, 0, to, MINUTE);
+		Cost shared = parallel.estimate(Method.LUCAS_FILTER, 0, to, MINUTE);
+
+		//Then
+		assertTrue("The producers must share the threads", shared.getNanos() < serial.getNanos() / 2);
+	}
+
+	@Test
+	public void lookupCostTest() {
+		//When
+		Cost looked = costModel.estimatePrimality(new long[]{2, 97, 1000});
+		Cost tested = costModel.estimatePrimality(new long[]{2, 97, 1_000_000_007L});
+		Cost nthPrime = costModel.estimateNthPrime(1_000_000_000L);
+
+		//Then
+		assertEquals("The numbers in the bitset must cost nothing to look up", 0, looked.getNanos());
+		assertTrue("The numbers above the bitset must be tested", tested.getNanos() > 0);
+		assertTrue("The n-th prime must cost its count", nthPrime.getNanos() > 0 && nthPrime.getBytes() > 0);
+		assertFalse("The lookups must not answer partially", tested.isPartial() || nthPrime.isPartial());
+	}
+
+	@Test
+	public void deadlineCapTest() {
+		//Given
+		long nanosLeft = TimeUnit.SECONDS.toNanos(5);
+
+		//When
+		Cost uncapped = costModel.estimate(Method.MILLER_RABIN, 0, Integer.MAX_VALUE - 5, MINUTE * 60);
+		Cost capped = costModel.estimate(Method.MILLER_RABIN, 0, Integer.MAX_VALUE - 5, nanosLeft);
+
+		//Then
+		assertEquals("The estimate must be capped by the time left", nanosLeft, capped.getNanos());
+		assertTrue("Only the prefix proven in time must be held", capped.getBytes() < uncapped.getBytes() / 10);
+	}
+}
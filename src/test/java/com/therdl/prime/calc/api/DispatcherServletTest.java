@@ -1,25 +1,38 @@
 package com.therdl.prime.calc.api;
 
+import com.therdl.prime.calc.alg.MemoryGovernor;
+import com.therdl.prime.calc.alg.PartialResultException;
+import com.therdl.prime.calc.alg.Primes;
+import com.therdl.prime.calc.alg.count.PrimeCountAlg;
 import com.therdl.prime.calc.alg.lucas.LucasAlg;
+import com.therdl.prime.calc.alg.millerrabin.MillerRabinAlg;
 import com.therdl.prime.calc.alg.sieve.SieveAlg;
 import com.therdl.prime.calc.model.Method;
 import com.therdl.prime.calc.model.Request;
 import com.therdl.prime.calc.model.Response;
+import com.therdl.prime.calc.model.ResponseField;
 import org.junit.Test;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeoutException;
 
+import static com.therdl.prime.calc.TestUtil.GOVERNOR;
+import static com.therdl.prime.calc.TestUtil.buildBatchRequest;
+import static com.therdl.prime.calc.TestUtil.buildRangeRequest;
 import static com.therdl.prime.calc.TestUtil.buildRequest;
+import static com.therdl.prime.calc.TestUtil.deadline;
+import static com.therdl.prime.calc.TestUtil.primesTill121;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
-import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.*;
 
 /**
  * Most of the functionality is tested in {@link com.therdl.prime.calc.PrimeCalcServiceTest}
- * Here we use mockito to test an internal server error
+ * Here we use mockito to test an internal server error and the answers to timeouts
  * Created by Alex on 24/04/2016.
  */
 public class DispatcherServletTest {
@@ -29,21 +42,26 @@ public class DispatcherServletTest {
 		//Given
 		SieveAlg sieveAlg = mock(SieveAlg.class);
 		LucasAlg lucasAlg = mock(LucasAlg.class);
-		DispatcherServlet ds = new DispatcherServlet(sieveAlg, lucasAlg);
+		MillerRabinAlg millerRabinAlg = mock(MillerRabinAlg.class);
+		PrimeCountAlg primeCountAlg = mock(PrimeCountAlg.class);
+		DispatcherServlet ds = new DispatcherServlet(sieveAlg, lucasAlg, millerRabinAlg, primeCountAlg,
+				mock(CostModel.class), new Admission(0), new Timings(false, 0), GOVERNOR, new ComputeExecutor(1, 16),
+				new Timeouts(5000, 30000), mock(Metrics.class));
 		Set<Error> errors = new HashSet<>();
 		Map<String, Object> requestMap = buildRequest(Method.LUCAS_FILTER.name(), "121");
 		Request request = new Request(requestMap);
 
 		//When
-		when(lucasAlg.process(any(int.class))).thenThrow(InterruptedException.class);
-		Response rs = ds.processRequest(request, errors);
+		when(lucasAlg.process(anyLong(), anyLong(), anyLong())).thenThrow(InterruptedException.class);
+		Response rs = ds.processRequest(request, deadline(), errors);
 
 		//Then
-		verify(lucasAlg, times(1)).process(any(int.class));
-		verify(sieveAlg, never()).process(any(int.class));
+		verify(lucasAlg, times(1)).process(anyLong(), anyLong(), anyLong());
+		verify(sieveAlg, never()).process(anyLong(), anyLong(), anyLong());
 		assertTrue("Result must be null", rs == null);
 		assertTrue("Must have one error", errors.size() == 1);
 		assertTrue("Error must be inner server", errors.contains(Error.SERVER_ERROR));
+		assertTrue("The interrupt must be kept for the jobs left", Thread.interrupted());
 	}
 
 	@Test
@@ -51,20 +69,184 @@ public class DispatcherServletTest {
 		//Given
 		SieveAlg sieveAlg = mock(SieveAlg.class);
 		LucasAlg lucasAlg = mock(LucasAlg.class);
-		DispatcherServlet ds = new DispatcherServlet(sieveAlg, lucasAlg);
+		MillerRabinAlg millerRabinAlg = mock(MillerRabinAlg.class);
+		PrimeCountAlg primeCountAlg = mock(PrimeCountAlg.class);
+		DispatcherServlet ds = new DispatcherServlet(sieveAlg, lucasAlg, millerRabinAlg, primeCountAlg,
+				mock(CostModel.class), new Admission(0), new Timings(false, 0), GOVERNOR, new ComputeExecutor(1, 16),
+				new Timeouts(5000, 30000), mock(Metrics.class));
 		Set<Error> errors = new HashSet<>();
 		Map<String, Object> requestMap = buildRequest(Method.SIEVE.name(), "121");
 		Request request = new Request(requestMap);
 
 		//When
-		when(sieveAlg.process(any(int.class))).thenThrow(InterruptedException.class);
-		Response rs = ds.processRequest(request, errors);
+		when(sieveAlg.process(anyLong(), anyLong(), anyLong())).thenThrow(InterruptedException.class);
+		Response rs = ds.processRequest(request, deadline(), errors);
 
 		//Then
-		verify(lucasAlg, never()).process(any(int.class));
-		verify(sieveAlg, times(1)).process(any(int.class));
+		verify(lucasAlg, never()).process(anyLong(), anyLong(), anyLong());
+		verify(sieveAlg, times(1)).process(anyLong(), anyLong(), anyLong());
 		assertTrue("Result must be null", rs == null);
 		assertTrue("Must have one error", errors.size() == 1);
 		assertTrue("Error must be inner server", errors.contains(Error.SERVER_ERROR));
+		assertTrue("The interrupt must be kept for the jobs left", Thread.interrupted());
+	}
+
+	@Test
+	public void serverErrorMillerRabinTest() throws TimeoutException, InterruptedException {
+		//Given
+		SieveAlg sieveAlg = mock(SieveAlg.class);
+		LucasAlg lucasAlg = mock(LucasAlg.class);
+		MillerRabinAlg millerRabinAlg = mock(MillerRabinAlg.class);
+		PrimeCountAlg primeCountAlg = mock(PrimeCountAlg.class);
+		DispatcherServlet ds = new DispatcherServlet(sieveAlg, lucasAlg, millerRabinAlg, primeCountAlg,
+				mock(CostModel.class), new Admission(0), new Timings(false, 0), GOVERNOR, new ComputeExecutor(1, 16),
+				new Timeouts(5000, 30000), mock(Metrics.class));
+		Set<Error> errors = new HashSet<>();
+		Map<String, Object> requestMap = buildRequest(Method.MILLER_RABIN.name(), "121");
+		Request request = new Request(requestMap);
+
+		//When
+		when(millerRabinAlg.process(anyLong(), anyLong(), anyLong())).thenThrow(InterruptedException.class);
+		Response rs = ds.processRequest(request, deadline(), errors);
+
+		//Then
+		verify(millerRabinAlg, times(1)).process(anyLong(), anyLong(), anyLong());
+		verify(sieveAlg, never()).process(anyLong(), anyLong(), anyLong());
+		verify(lucasAlg, never()).process(anyLong(), anyLong(), anyLong());
+		assertTrue("Result must be null", rs == null);
+		assertTrue("Must have one error", errors.size() == 1);
+		assertTrue("Error must be inner server", errors.contains(Error.SERVER_ERROR));
+		assertTrue("The interrupt must be kept for the jobs left", Thread.interrupted());
+	}
+
+	@Test
+	public void timeoutCountTest() throws TimeoutException, InterruptedException {
+		//Given
+		SieveAlg sieveAlg = mock(SieveAlg.class);
+		LucasAlg lucasAlg = mock(LucasAlg.class);
+		MillerRabinAlg millerRabinAlg = mock(MillerRabinAlg.class);
+		PrimeCountAlg primeCountAlg = mock(PrimeCountAlg.class);
+		DispatcherServlet ds = new DispatcherServlet(sieveAlg, lucasAlg, millerRabinAlg, primeCountAlg,
+				mock(CostModel.class), new Admission(0), new Timings(false, 0), GOVERNOR, new ComputeExecutor(1, 16),
+				new Timeouts(5000, 30000), mock(Metrics.class));
+		Set<Error> errors = new HashSet<>();
+		Map<String, Object> requestMap = buildRequest(Method.COUNT.name(), "121");
+		Request request = new Request(requestMap);
+
+		//When
+		when(primeCountAlg.process(anyLong(), anyLong(), anyLong())).thenThrow(TimeoutException.class);
+		Response rs = ds.processRequest(request, deadline(), errors);
+
+		//Then
+		verify(primeCountAlg, times(1)).process(anyLong(), anyLong(), anyLong());
+		verify(sieveAlg, never()).process(anyLong(), anyLong(), anyLong());
+		assertTrue("Result must be null", rs == null);
+		assertTrue("Must have one error", errors.size() == 1);
+		assertTrue("Error must be timeout", errors.contains(Error.TIMEOUT_ERROR));
+	}
+
+	@Test
+	public void partialResultSieveTest() throws TimeoutException, InterruptedException {
+		//Given
+		SieveAlg sieveAlg = mock(SieveAlg.class);
+		LucasAlg lucasAlg = mock(LucasAlg.class);
+		MillerRabinAlg millerRabinAlg = mock(MillerRabinAlg.class);
+		PrimeCountAlg primeCountAlg = mock(PrimeCountAlg.class);
+		DispatcherServlet ds = new DispatcherServlet(sieveAlg, lucasAlg, millerRabinAlg, primeCountAlg,
+				mock(CostModel.class), new Admission(0), new Timings(false, 0), GOVERNOR, new ComputeExecutor(1, 16),
+				new Timeouts(5000, 30000), mock(Metrics.class));
+		Set<Error> errors = new HashSet<>();
+		Map<String, Object> requestMap = buildRequest(Method.SIEVE.name(), "121");
+		Request request = new Request(requestMap);
+		Primes prefix = new Primes();
+		prefix.add(2);
+		prefix.add(3);
+		prefix.add(5);
+
+		//When
+		when(sieveAlg.process(anyLong(), anyLong(), anyLong())).thenThrow(new PartialResultException(prefix, 6));
+		Response rs = ds.processRequest(request, deadline(), errors);
+
+		//Then
+		assertTrue("There must be no errors", errors.isEmpty());
+		assertEquals("The proven primes must be answered", prefix, rs.getContents().get(ResponseField.PRIMES.getLabel()));
+		assertEquals("The primes must be complete up to 6", 6L,
+				rs.getContents().get(ResponseField.COMPLETE_UP_TO.getLabel()));
+	}
+
+	@Test
+	public void batchTest() throws TimeoutException, InterruptedException {
+		//Given
+		SieveAlg sieveAlg = mock(SieveAlg.class);
+		PrimeCountAlg primeCountAlg = mock(PrimeCountAlg.class);
+		MemoryGovernor governor = new MemoryGovernor(0, 16);
+		DispatcherServlet ds = new DispatcherServlet(sieveAlg, mock(LucasAlg.class), mock(MillerRabinAlg.class),
+				primeCountAlg, mock(CostModel.class), new Admission(0), new Timings(false, 0), governor,
+				new ComputeExecutor(1, 16), new Timeouts(5000, 30000), mock(Metrics.class));
+		Primes primes = new Primes();
+		primesTill121.forEach(primes::add);
+		Request batch = new Request(buildBatchRequest(buildRequest(Method.SIEVE.name(), "30"),
+				buildRequest(Method.SIEVE.name(), "-1"),
+				buildRangeRequest(Method.SIEVE.name(), "100", "121"),
+				buildRangeRequest(Method.COUNT.name(), "0", "1000"),
+				buildRequest(Method.SIEVE.name(), "121")));
+
+		long deadline = deadline();
+
+		//When
+		when(sieveAlg.process(0, 121, deadline)).thenReturn(primes);
+		when(primeCountAlg.process(0, 1000, deadline)).thenReturn(168L);
+		Response rs = ds.processBatch(batch, ds.validateJobs(batch), deadline);
+
+		//Then
+		verify(sieveAlg, times(1)).process(anyLong(), anyLong(), anyLong());
+		List<Map<String, Object>> results = (List<Map<String, Object>>) rs.getContents()
+				.get(ResponseField.RESULTS.getLabel());
+		assertEquals("Every job must be answered", 5, results.size());
+		assertEquals("The primes up to 30 must be sliced", 10,
+				((Primes) results.get(0).get(ResponseField.PRIMES.getLabel())).size());
+		assertTrue("The invalid job must be answered with its error",
+				results.get(1).containsKey(ResponseField.ERROR.getLabel()));
+		assertEquals("The primes from 100 to 121 must be sliced", 5,
+				((Primes) results.get(2).get(ResponseField.PRIMES.getLabel())).size());
+		assertEquals("The count must be answered", 168L, results.get(3).get(ResponseField.COUNT.getLabel()));
+		assertEquals("All the primes must be answered", primes.size(),
+				((Primes) results.get(4).get(ResponseField.PRIMES.getLabel())).size());
+		assertEquals("The primes of the span must be held once until the response is written",
+				(long) primes.size() * Primes.BYTES_PER_PRIME, governor.getReserved());
+		rs.release();
+		assertEquals("The primes must be released once written", 0, governor.getReserved());
+	}
+
+	@Test
+	public void partialBatchTest() throws TimeoutException, InterruptedException {
+		//Given
+		SieveAlg sieveAlg = mock(SieveAlg.class);
+		DispatcherServlet ds = new DispatcherServlet(sieveAlg, mock(LucasAlg.class), mock(MillerRabinAlg.class),
+				mock(PrimeCountAlg.class), mock(CostModel.class), new Admission(0), new Timings(false, 0),
+				GOVERNOR, new ComputeExecutor(1, 16), new Timeouts(5000, 30000), mock(Metrics.class));
+		Primes prefix = new Primes();
+		prefix.add(2);
+		prefix.add(3);
+		prefix.add(5);
+		Request batch = new Request(buildBatchRequest(buildRequest(Method.SIEVE.name(), "5"),
+				buildRequest(Method.SIEVE.name(), "121"),
+				buildRangeRequest(Method.SIEVE.name(), "100", "121")));
+
+		//When
+		when(sieveAlg.process(anyLong(), anyLong(), anyLong())).thenThrow(new PartialResultException(prefix, 6));
+		Response rs = ds.processBatch(batch, ds.validateJobs(batch), deadline());
+
+		//Then
+		List<Map<String, Object>> results = (List<Map<String, Object>>) rs.getContents()
+				.get(ResponseField.RESULTS.getLabel());
+		assertEquals("The job proven in time must be complete", 3,
+				((Primes) results.get(0).get(ResponseField.PRIMES.getLabel())).size());
+		assertTrue("The job proven in time must be complete",
+				!results.get(0).containsKey(ResponseField.COMPLETE_UP_TO.getLabel()));
+		assertEquals("The job cut short must be complete up to 6", 6L,
+				results.get(1).get(ResponseField.COMPLETE_UP_TO.getLabel()));
+		assertTrue("The job with nothing proven must time out",
+				results.get(2).get(ResponseField.ERROR.getLabel()).toString().contains(Error.TIMEOUT_ERROR.name()));
 	}
 }
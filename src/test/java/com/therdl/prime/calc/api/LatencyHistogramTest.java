@@ -0,0 +1,54 @@
+package com.therdl.prime.calc.api;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the percentiles read back stay within the precision of the buckets, down to the tail
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void percentilesTest() {
+		//Given
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		//When
+		for (long micros = 1; micros <= 100_000; micros++) {
+			histogram.record(micros);
+		}
+		histogram.record(60_000_000);
+
+		//Then
+		assertEquals("Every latency must be counted", 100_001, histogram.getCount());
+		assertEquals("The max must be exact", 60_000_000, histogram.getMax());
+		assertWithin("p50", 50_000, histogram.getPercentile(50));
+		assertWithin("p99", 99_000, histogram.getPercentile(99));
+		assertWithin("p99.9", 99_900, histogram.getPercentile(99.9));
+		assertEquals("The top percentile must be the outlier", 60_000_000, histogram.getPercentile(100));
+	}
+
+	@Test
+	public void smallValuesTest() {
+		//Given
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		//When
+		histogram.record(3);
+		histogram.record(-5);
+		histogram.record(40);
+
+		//Then
+		assertEquals("A negative latency must count as 0", 0, histogram.getPercentile(0));
+		assertEquals("The small values must be exact", 3, histogram.getPercentile(50));
+		assertEquals("The mean must be exact", 14, histogram.getMean());
+		assertEquals("An empty histogram must answer 0", 0, new LatencyHistogram().getPercentile(99));
+	}
+
+	private static void assertWithin(String name, long expected, long actual) {
+		assertTrue(name + " must be within 3% of " + expected + " but was " + actual,
+				actual >= expected && actual <= expected * 1.03);
+	}
+}
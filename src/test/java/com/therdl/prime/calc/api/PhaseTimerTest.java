@@ -0,0 +1,50 @@
+package com.therdl.prime.calc.api;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the phases marked are answered in order in the Server-Timing header and the slow request log, and that
+ * the timers are off unless the timings are asked for
+ */
+public class PhaseTimerTest {
+
+	@Test
+	public void serverTimingTest() throws InterruptedException {
+		//Given
+		PhaseTimer timer = new Timings(true, 0).start();
+
+		//When
+		timer.mark(PhaseTimer.Phase.READ);
+		timer.mark(PhaseTimer.Phase.VALIDATE);
+		Thread.sleep(5);
+		timer.mark(PhaseTimer.Phase.COMPUTE);
+
+		//Then
+		String header = timer.toServerTiming();
+		assertTrue("The header must be answered", timer.isHeader());
+		assertTrue("The phases marked must be answered in order, not " + header,
+				header.matches("read;dur=\\d+\\.\\d{3}, validate;dur=\\d+\\.\\d{3}, compute;dur=\\d+\\.\\d{3}, "
+						+ "total;dur=\\d+\\.\\d{3}"));
+		assertTrue("The sleep must be timed", timer.getTotalNanos() >= 5_000_000);
+		assertTrue("The log must lead with the total", timer.toLog().startsWith("totalMs="));
+	}
+
+	@Test
+	public void offTest() {
+		//Given
+		Timings timings = new Timings(false, 0);
+
+		//When
+		PhaseTimer timer = timings.start();
+		timer.mark(PhaseTimer.Phase.READ);
+
+		//Then
+		assertFalse("The header must not be answered", timer.isHeader());
+		assertEquals("Nothing must be timed", 0, timer.getTotalNanos());
+		assertEquals("Only the total must be answered", "total;dur=0.000", timer.toServerTiming());
+	}
+}
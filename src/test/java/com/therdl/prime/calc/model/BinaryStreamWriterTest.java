@@ -0,0 +1,141 @@
+package com.therdl.prime.calc.model;
+
+import com.therdl.prime.calc.alg.Primes;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.therdl.prime.calc.TestUtil.primesTill7919;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that the primes are read back from every binary encoding and that the encoding is negotiated from the Accept
+ * header
+ */
+public class BinaryStreamWriterTest {
+
+	private static Primes primes(long from) {
+		Primes primes = new Primes();
+		primesTill7919.stream().filter(p -> p >= from).forEach(primes::add);
+		return primes;
+	}
+
+	private static byte[] write(Encoding encoding, Primes primes, long from, long to) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new BinaryStreamWriter(out).write(encoding, primes, from, to);
+		return out.toByteArray();
+	}
+
+	@Test
+	public void fixedTest() throws IOException {
+		//Given
+		Primes primes = primes(0);
+
+		//When
+		ByteBuffer int32 = ByteBuffer.wrap(write(Encoding.INT32, primes, 0, 7919)).order(ByteOrder.LITTLE_ENDIAN);
+		ByteBuffer int64 = ByteBuffer.wrap(write(Encoding.INT64, primes, 0, 7919)).order(ByteOrder.LITTLE_ENDIAN);
+
+		//Then
+		assertEquals("4 bytes a prime", primes.size() * 4, int32.remaining());
+		assertEquals("8 bytes a prime", primes.size() * 8, int64.remaining());
+		for (int i = 0; i < primes.size(); i++) {
+			assertEquals("The int32 primes must be read back", primes.get(i), int32.getInt());
+			assertEquals("The int64 primes must be read back", primes.get(i), int64.getLong());
+		}
+	}
+
+	@Test
+	public void varintTest() throws IOException {
+		//Given
+		Primes primes = new Primes();
+		primes.add(5);
+		primes.add(1L << 40);
+		primes.add((1L << 40) + 300);
+
+		//When
+		byte[] bytes = write(Encoding.VARINT, primes, 0, Long.MAX_VALUE);
+
+		//Then
+		List<Long> read = new ArrayList<>();
+		long previous = 0;
+		int i = 0;
+		while (i < bytes.length) {
+			long gap = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = bytes[i++];
+				gap |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			previous += gap;
+			read.add(previous);
+		}
+		assertEquals("1 byte, 6 bytes and 2 bytes", 9, bytes.length);
+		assertEquals("The primes must be read back", 3, read.size());
+		for (int j = 0; j < primes.size(); j++) {
+			assertEquals("The primes must be read back", primes.get(j), (long) read.get(j));
+		}
+	}
+
+	@Test
+	public void bitmapTest() throws IOException {
+		//Given
+		long from = 100;
+		long to = 7919;
+		Primes primes = primes(from);
+
+		//When
+		byte[] bytes = write(Encoding.BITMAP, primes, from, to);
+
+		//Then
+		long start = BinaryStreamWriter.bitmapStart(from);
+		assertEquals("The bitmap must start at the first odd number", 101, start);
+		assertEquals("A bit per odd number up to the end", ((to - start) / 2) / 8 + 1, bytes.length);
+		Primes read = new Primes();
+		for (int bit = 0; bit < bytes.length * 8; bit++) {
+			if ((bytes[bit / 8] & 1 << (bit % 8)) != 0) {
+				read.add(start + 2L * bit);
+			}
+		}
+		assertEquals("The primes must be read back", primes.size(), read.size());
+		for (int i = 0; i < primes.size(); i++) {
+			assertEquals("The primes must be read back", primes.get(i), read.get(i));
+		}
+	}
+
+	@Test
+	public void bitmapFromZeroTest() throws IOException {
+		//Given
+		Primes primes = primes(0);
+
+		//When
+		byte[] bytes = write(Encoding.BITMAP, primes, 0, 20);
+
+		//Then 3 5 7 11 13 17 19 are the bits 1 2 3 5 6 8 9 of the odd numbers from 1
+		assertEquals("The odd numbers up to 20 take 2 bytes", 2, bytes.length);
+		assertEquals("The primes up to 15", 0b01101110, bytes[0]);
+		assertEquals("The primes from 17 up to 20", 0b00000011, bytes[1]);
+	}
+
+	@Test
+	public void negotiateTest() {
+		assertEquals("No Accept header answers JSON", Encoding.JSON, Encoding.negotiate(null, 100));
+		assertEquals("A wildcard answers JSON", Encoding.JSON, Encoding.negotiate("text/html, */*; q=.2", 100));
+		assertEquals("The encoding asked for must be answered", Encoding.VARINT,
+				Encoding.negotiate("application/x-primes-varint", 100));
+		assertEquals("The highest quality must be answered", Encoding.BITMAP,
+				Encoding.negotiate("application/json;q=0.5, application/x-primes-bitmap", 100));
+		assertEquals("int32 cannot hold primes above Integer.MAX_VALUE", Encoding.INT64,
+				Encoding.negotiate("application/x-primes-int32, application/x-primes-int64;q=0.9", 1L << 32));
+		assertNull("Nothing acceptable must answer null", Encoding.negotiate("text/html", 100));
+		assertNull("int32 alone cannot hold primes above Integer.MAX_VALUE",
+				Encoding.negotiate("application/x-primes-int32", 1L << 32));
+	}
+}